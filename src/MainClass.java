@@ -1,5 +1,7 @@
 import graphics.Drawer;
 import graphics.Window;
+import search.heuristics.HeuristicCache;
+import search.heuristics.Landmarks;
 
 /**
  * Created by Nicolas on 11/10/2016
@@ -9,6 +11,7 @@ public class MainClass {
 
     public static void main(String[] args) {
         editGraphicSettings();
+        editHeuristicSettings();
 
         new Drawer("level1");
         System.exit(0);
@@ -25,4 +28,11 @@ public class MainClass {
         Window.ENABLE_GRID = true;
         Window.DEFAULT_WINDOW_NAME = "Parcel Wars";
     }
+
+    //The Dijkstra heuristics computed are kept for the next searches (see HeuristicCache.java)
+    private static void editHeuristicSettings() {
+        HeuristicCache.MEMORY_BUDGET = 1L << 26;
+        HeuristicCache.DIRECTORY = null;        //A directory (e.g. "heuristics") keeps them on the disk, for the next games
+        Landmarks.LANDMARKS_NUMBER = 8;         //More landmarks make the landmarks heuristic more accurate, but bigger
+    }
 }
@@ -0,0 +1,316 @@
+package benchmarks;
+
+import search.Conflict;
+import search.Portfolio;
+import search.SearchField;
+import search.heuristics.HeuristicCache;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This program solves a list of levels without the display (no window, no sound), for the regression and capacity runs
+ * on the machines which can't open a window.
+ *
+ * The levels are solved at the same time by a pool of threads, each level in its own SearchField, with the heuristic and the
+ * search engine chosen (or the portfolio of all of them, see Portfolio.java). For each level, the program writes:
+ *      - the cost of the solution, and whether it is valid (no conflict between the robots, every robot on its goal)
+ *      - the number of nodes expanded (see SearchProgress.java)
+ *      - the wall time of the search, with the construction of the heuristic but without the reading of the level
+ *      - the memory of the search of the level alone (see SearchProgress.java): the bytes allocated on the heap by the threads
+ *        of its search, and the bytes of its visited tables (on the heap or off the heap, see SearchField.setNodeStorageType()).
+ *        The heuristic fields computed by the common fork-join pool (see Heuristic.calculateFields()) are not counted.
+ *      - with -threads 1 only, the peak of heap of the level: the highest heap used, sampled every MEMORY_SAMPLE_PERIOD_MS while
+ *        the level is solved, minus the heap used after a garbage collection just before it. It includes the garbage of the level
+ *        not collected yet. With more threads, the heap is shared by the levels solved at the same time: the peak is not measured,
+ *        and its column of the CSV file is left empty (no level has a peak of 0 bytes).
+ * The results are displayed once all levels are solved, in the order given, and can also be written in a CSV file.
+ * The program exits with the status 1 if a level was not solved.
+ *
+ * Usage: java benchmarks.BatchSolver [options] levels...
+ *      - a level is the name of a level of the game (e.g. level1), a path to a level file (see FileRead.java),
+ *        or a directory: all its .txt files are solved
+ *      - -heuristic DIJKSTRA|MANHATTAN|EUCLIDEAN|PAIRWISE|LANDMARKS (DIJKSTRA by default)
+ *      - -engine A_STAR|OPERATOR_DECOMPOSITION|PARTIAL_EXPANSION|CONFLICT_BASED_SEARCH|PORTFOLIO (A_STAR by default)
+ *      - -threads n: the number of levels solved at the same time (the number of processors by default)
+ *      - -nodeBudget n, -timeBudget ms: the search of a level stops after this number of nodes or this time
+ *      - -storage HEAP|OFF_HEAP: where the visited configurations are kept (HEAP by default, see SearchField.setNodeStorageType())
+ *      - -heuristicCache directory: the Dijkstra heuristics are kept in this directory for the next runs (see HeuristicCache.java)
+ *      - -output file: the CSV file where the results are written
+ *      - -quiet: the diagnoses of the searches are not displayed, only the results
+ */
+
+public class BatchSolver {
+
+    private static final long MEMORY_SAMPLE_PERIOD_MS = 10;
+    private static final String PORTFOLIO_ENGINE = "PORTFOLIO";
+
+    private final List<Portfolio.Configuration> configurations;
+    private final int portfolioThreadsNumber;
+    private final long nodeBudget;
+    private final long timeBudget;
+    private final SearchField.NodeStorageType nodeStorageType;
+    private final String heuristicCacheDirectory;
+    //The level being solved, whose peak of heap is updated by the sampler (only with one thread)
+    private volatile LevelResult runningLevel;
+
+    private BatchSolver(List<Portfolio.Configuration> configurations, int portfolioThreadsNumber, long nodeBudget, long timeBudget,
+                        SearchField.NodeStorageType nodeStorageType, String heuristicCacheDirectory) {
+        this.configurations = configurations;
+        this.portfolioThreadsNumber = portfolioThreadsNumber;
+        this.nodeBudget = nodeBudget;
+        this.timeBudget = timeBudget;
+        this.nodeStorageType = nodeStorageType;
+        this.heuristicCacheDirectory = heuristicCacheDirectory;
+    }
+
+    public static void main(String[] args) {
+        String heuristicName = "DIJKSTRA";
+        String engineName = "A_STAR";
+        int threadsNumber = Runtime.getRuntime().availableProcessors();
+        long nodeBudget = Long.MAX_VALUE;
+        long timeBudget = Long.MAX_VALUE;
+        String storageName = "HEAP";
+        String heuristicCacheDirectory = null;
+        String outputFile = null;
+        boolean isQuiet = false;
+        ArrayList<String> levelNames = new ArrayList<>();
+        try {
+            for (int argIndex = 0; argIndex < args.length; argIndex++) {
+                switch (args[argIndex]) {
+                    case "-heuristic":
+                        heuristicName = args[++argIndex].toUpperCase();
+                        break;
+                    case "-engine":
+                        engineName = args[++argIndex].toUpperCase();
+                        break;
+                    case "-threads":
+                        threadsNumber = Integer.parseInt(args[++argIndex]);
+                        break;
+                    case "-nodeBudget":
+                        nodeBudget = Long.parseLong(args[++argIndex]);
+                        break;
+                    case "-timeBudget":
+                        timeBudget = Long.parseLong(args[++argIndex]);
+                        break;
+                    case "-storage":
+                        storageName = args[++argIndex].toUpperCase();
+                        break;
+                    case "-heuristicCache":
+                        heuristicCacheDirectory = args[++argIndex];
+                        break;
+                    case "-output":
+                        outputFile = args[++argIndex];
+                        break;
+                    case "-quiet":
+                        isQuiet = true;
+                        break;
+                    default:
+                        addLevels(args[argIndex], levelNames);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            System.out.println("Error in BatchSolver.main(): bad arguments -> args=" + Arrays.toString(args));
+            System.exit(2);
+        }
+        if (levelNames.isEmpty() || threadsNumber < 1) {
+            System.out.println("Usage: java benchmarks.BatchSolver [-heuristic DIJKSTRA|MANHATTAN|EUCLIDEAN|PAIRWISE|LANDMARKS] [-engine A_STAR|OPERATOR_DECOMPOSITION|"
+                    + "PARTIAL_EXPANSION|CONFLICT_BASED_SEARCH|PORTFOLIO] [-threads n] [-nodeBudget n] [-timeBudget ms] [-storage HEAP|OFF_HEAP] [-heuristicCache directory] [-output file.csv] [-quiet] levels...");
+            System.exit(2);
+        }
+
+        List<Portfolio.Configuration> configurations;
+        SearchField.NodeStorageType nodeStorageType;
+        try {
+            nodeStorageType = SearchField.NodeStorageType.valueOf(storageName);
+            if (engineName.equals(PORTFOLIO_ENGINE)) configurations = Portfolio.getDefaultConfigurations();
+            else configurations = Collections.singletonList(new Portfolio.Configuration(Portfolio.HeuristicType.valueOf(heuristicName), Portfolio.Engine.valueOf(engineName)));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error in BatchSolver.main(): unknown heuristic, engine or storage -> heuristic=" + heuristicName
+                    + ", engine=" + engineName + ", storage=" + storageName);
+            System.exit(2);
+            return;
+        }
+        //A single configuration only needs one thread of the portfolio
+        int portfolioThreadsNumber = (configurations.size() == 1) ? 1 : Runtime.getRuntime().availableProcessors();
+
+        //The results are written to the standard output, even when the diagnoses of the searches are not
+        PrintStream results = System.out;
+        if (isQuiet) System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        BatchSolver batchSolver = new BatchSolver(configurations, portfolioThreadsNumber, nodeBudget, timeBudget, nodeStorageType, heuristicCacheDirectory);
+        List<LevelResult> levelResults = batchSolver.solveLevels(levelNames, threadsNumber, results);
+
+        results.println("\nLevels solved with " + (engineName.equals(PORTFOLIO_ENGINE) ? PORTFOLIO_ENGINE : configurations.get(0)) + ", " + threadsNumber + " threads, "
+                + nodeStorageType + " storage:");
+        for (LevelResult levelResult : levelResults) results.println(levelResult);
+        results.println(HeuristicCache.getStatistics());
+        if (outputFile != null) writeCsv(outputFile, levelResults);
+        boolean areAllSolved = true;
+        for (LevelResult levelResult : levelResults) areAllSolved &= levelResult.isSolved();
+        System.exit(areAllSolved ? 0 : 1);
+    }
+
+    //A directory stands for all its level files
+    private static void addLevels(String levelName, ArrayList<String> levelNames) {
+        File directory = new File(levelName);
+        File[] levelFiles = directory.listFiles((File file) -> file.isFile() && file.getName().endsWith(".txt"));
+        if (!directory.isDirectory() || levelFiles == null) {
+            levelNames.add(levelName);
+            return;
+        }
+        Arrays.sort(levelFiles);
+        for (File levelFile : levelFiles) levelNames.add(levelFile.getPath());
+    }
+
+    private List<LevelResult> solveLevels(List<String> levelNames, int threadsNumber, PrintStream results) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadsNumber, levelNames.size()));
+        boolean isPeakMeasured = (threadsNumber == 1);
+        ScheduledExecutorService memorySampler = Executors.newSingleThreadScheduledExecutor();
+        if (isPeakMeasured) memorySampler.scheduleAtFixedRate(this::sampleMemory, 0, MEMORY_SAMPLE_PERIOD_MS, TimeUnit.MILLISECONDS);
+        ArrayList<Future<LevelResult>> futures = new ArrayList<>();
+        for (String levelName : levelNames) {
+            futures.add(executor.submit(() -> {
+                LevelResult levelResult = solveLevel(levelName, isPeakMeasured);
+                results.println("Done: " + levelResult);
+                return levelResult;
+            }));
+        }
+        ArrayList<LevelResult> levelResults = new ArrayList<>();
+        for (int levelIndex = 0; levelIndex < levelNames.size(); levelIndex++) {
+            try {
+                levelResults.add(futures.get(levelIndex).get());
+            } catch (InterruptedException | ExecutionException e) {
+                //Even an error of the JVM (e.g. out of memory) only fails its level
+                LevelResult levelResult = new LevelResult(levelNames.get(levelIndex));
+                levelResult.status = "error: " + (e.getCause() == null ? e : e.getCause());
+                levelResults.add(levelResult);
+            }
+        }
+        executor.shutdown();
+        memorySampler.shutdown();
+        return levelResults;
+    }
+
+    private LevelResult solveLevel(String levelName, boolean isPeakMeasured) {
+        LevelResult levelResult = new LevelResult(levelName);
+        SearchField searchField = new SearchField(levelName);
+        if (searchField.getRobotData() == null) {
+            levelResult.status = "error: the level could not be read";
+            return levelResult;
+        }
+        levelResult.robotsNumber = searchField.getRobotData().getRobotsNumber();
+        searchField.setNodeBudget(nodeBudget);
+        searchField.setTimeBudget(timeBudget);
+        searchField.setNodeStorageType(nodeStorageType);
+        searchField.setHeuristicCacheDirectory(heuristicCacheDirectory);
+        if (isPeakMeasured) {
+            //The heap left by the previous levels is not part of this one
+            System.gc();
+            levelResult.heapBaseline = getUsedHeap();
+            levelResult.peakHeap = 0;
+            runningLevel = levelResult;
+        }
+        long startTime = System.nanoTime();
+        try {
+            short[][] paths = searchField.findPaths(configurations, portfolioThreadsNumber);
+            levelResult.wallTime = (System.nanoTime() - startTime) / 1000000;
+            levelResult.nodesExpanded = searchField.getProgress().getNodesExpanded();
+            if (paths != null) {
+                levelResult.cost = searchField.getPathsCost(paths);
+                levelResult.status = isValid(searchField, paths) ? "solved" : "invalid solution";
+            } else {
+                String stopReason = searchField.getProgress().getStopReason();
+                levelResult.status = (stopReason == null) ? "no solution" : "stopped: " + stopReason;
+            }
+        } catch (IllegalStateException e) {
+            //All the configurations failed
+            levelResult.wallTime = (System.nanoTime() - startTime) / 1000000;
+            levelResult.nodesExpanded = searchField.getProgress().getNodesExpanded();
+            levelResult.status = "error: " + e.getCause();
+        } finally {
+            runningLevel = null;
+            levelResult.bytesAllocated = searchField.getProgress().getBytesAllocated();
+            levelResult.storageBytes = searchField.getProgress().getStorageBytes();
+        }
+        return levelResult;
+    }
+
+    //Every robot ends on its goal, and no robot gets in the way of another one (see Conflict.java)
+    private static boolean isValid(SearchField searchField, short[][] paths) {
+        for (short robotIndex = 0; robotIndex < paths.length; robotIndex++) {
+            if (paths[robotIndex][0] != searchField.getRobotData().getStartLocationForRobot(robotIndex)) return false;
+            if (paths[robotIndex][paths[robotIndex].length - 1] != searchField.getRobotData().getGoalLocationForRobot(robotIndex)) return false;
+        }
+        return Conflict.findFirstConflict(paths) == null;
+    }
+
+    private void sampleMemory() {
+        LevelResult levelResult = runningLevel;
+        if (levelResult != null) levelResult.peakHeap = Math.max(levelResult.peakHeap, getUsedHeap() - levelResult.heapBaseline);
+    }
+
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void writeCsv(String outputFile, List<LevelResult> levelResults) {
+        try (PrintWriter writer = new PrintWriter(outputFile)) {
+            writer.println("level,robots,status,cost,nodes_expanded,wall_time_ms,bytes_allocated,storage_bytes,peak_heap_bytes");
+            for (LevelResult levelResult : levelResults) {
+                writer.println(levelResult.levelName + "," + levelResult.robotsNumber + "," + levelResult.status.replace(',', ';') + ","
+                        + levelResult.cost + "," + levelResult.nodesExpanded + "," + levelResult.wallTime + "," + levelResult.bytesAllocated + ","
+                        + levelResult.storageBytes + "," + (levelResult.peakHeap == -1 ? "" : String.valueOf(levelResult.peakHeap)));
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Error in BatchSolver.writeCsv(): the file could not be written -> outputFile=" + outputFile);
+        }
+    }
+
+    private static class LevelResult {
+
+        private final String levelName;
+        private int robotsNumber;
+        private String status = "not solved";
+        private int cost = -1;
+        private long nodesExpanded;
+        private long wallTime;
+        private long bytesAllocated;
+        private long storageBytes;
+        private long heapBaseline;
+        //Written by the memory sampler while the level is solved (-1 when it is not measured)
+        private volatile long peakHeap = -1;
+
+        private LevelResult(String levelName) {
+            this.levelName = levelName;
+        }
+
+        private boolean isSolved() {
+            return status.equals("solved");
+        }
+
+        @Override
+        public String toString() {
+            return levelName + ": " + status + (cost == -1 ? "" : ", cost " + cost) + ", " + nodesExpanded + " nodes expanded, "
+                    + wallTime + "ms, " + bytesAllocated / (1024 * 1024) + "MB allocated, " + storageBytes / (1024 * 1024) + "MB of visited tables"
+                    + (peakHeap == -1 ? "" : ", peak heap " + peakHeap / (1024 * 1024) + "MB") + " (" + robotsNumber + " robots)";
+        }
+    }
+}
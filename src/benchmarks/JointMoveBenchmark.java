@@ -0,0 +1,80 @@
+package benchmarks;
+
+import search.JointMoveEnumerator;
+import search.Node;
+import search.SearchField;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+/**
+ * This program measures the memory allocated by the creation of the children of a node with the JOINT_MOVES
+ * expansion mode (see JointMoveEnumerator.java), without the display.
+ *
+ * The nodes expanded are the initial configuration of the level and its first descendants. Each node is expanded many times:
+ *      - with a ChildFilter rejecting every child, like children already visited: nothing should be allocated at all
+ *      - with every child created and then thrown away by the childHandler, like before the enumerator (for comparison)
+ * The bytes allocated by the thread are read from the JVM (HotSpot only).
+ *
+ * Usage: java benchmarks.JointMoveBenchmark [level name] [number of expansions]
+ */
+
+public class JointMoveBenchmark {
+
+    private static final int NODES_NUMBER = 1000;
+
+    public static void main(String[] args) {
+        String levelName = (args.length > 0) ? args[0] : "level9";
+        int expansionsNumber = (args.length > 1) ? Integer.parseInt(args[1]) : 1_000_000;
+        SearchField searchField = new SearchField(levelName);
+        short[] group = searchField.getAllRobotsIndexes();
+        ArrayList<Node> nodes = collectNodes(searchField, group);
+        System.out.println("Level " + levelName + ": " + group.length + " robots, " + nodes.size() + " nodes expanded in turn");
+
+        JointMoveEnumerator rejectingEnumerator = new JointMoveEnumerator(searchField, group.length, (long[] key, int hash, int cost) -> false);
+        JointMoveEnumerator creatingEnumerator = new JointMoveEnumerator(searchField, group.length, null);
+        //Warm up, so that the methods are compiled before being measured
+        run(rejectingEnumerator, nodes, expansionsNumber / 10);
+        run(creatingEnumerator, nodes, expansionsNumber / 10);
+
+        display("Children rejected before being created", rejectingEnumerator, nodes, expansionsNumber);
+        display("Children created then thrown away", creatingEnumerator, nodes, expansionsNumber);
+    }
+
+    //The first nodes of a breadth-first search from the initial configuration
+    private static ArrayList<Node> collectNodes(SearchField searchField, short[] group) {
+        ArrayList<Node> nodes = new ArrayList<>();
+        nodes.add(new Node(searchField.getStartLocations(group), false));
+        JointMoveEnumerator enumerator = new JointMoveEnumerator(searchField, group.length, null);
+        for (int nodeIndex = 0; nodeIndex < nodes.size() && nodes.size() < NODES_NUMBER; nodeIndex++) {
+            enumerator.expandNode(nodes.get(nodeIndex), (Node parent, Node nodeChild) -> nodes.size() < NODES_NUMBER && nodes.add(nodeChild));
+        }
+        return nodes;
+    }
+
+    private static void display(String title, JointMoveEnumerator enumerator, ArrayList<Node> nodes, int expansionsNumber) {
+        long combinationsBefore = enumerator.getCombinationsTried();
+        long childrenBefore = enumerator.getChildrenCreated();
+        long bytesBefore = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        run(enumerator, nodes, expansionsNumber);
+        long time = System.nanoTime() - startTime;
+        long bytes = getAllocatedBytes() - bytesBefore;
+        long combinations = enumerator.getCombinationsTried() - combinationsBefore;
+        System.out.println(title + ":");
+        System.out.println("\tExpansions: " + expansionsNumber + ", combinations tried: " + combinations
+                + ", children created: " + (enumerator.getChildrenCreated() - childrenBefore));
+        System.out.println("\tTime: " + time / 1000000 + "ms (" + (float) time / combinations + "ns per combination)");
+        System.out.println("\tBytes allocated: " + bytes + " (" + (float) bytes / expansionsNumber + " per expansion)");
+    }
+
+    private static void run(JointMoveEnumerator enumerator, ArrayList<Node> nodes, int expansionsNumber) {
+        for (int expansion = 0; expansion < expansionsNumber; expansion++) {
+            enumerator.expandNode(nodes.get(expansion % nodes.size()), (Node parent, Node nodeChild) -> false);
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
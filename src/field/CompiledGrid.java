@@ -0,0 +1,108 @@
+package field;
+
+import java.util.ArrayList;
+
+/**
+ * This class is a read-only copy of the level matrix, built once when the level is loaded (see SearchField.getGrid()),
+ * in the form the searches and the heuristics read the fastest:
+ *      - a bitset of the walkable locations
+ *      - an int array of the cost to enter each location (see BlockType.java)
+ *      - a table of the 4 neighbours of each location, in the order LEFT, UP, RIGHT, DOWN (see getNeighbour()),
+ *        where a wall, or a side of the level, is -1
+ * So moving a robot is a single array read: there is no need to compute the value of a Direction (see Direction.java),
+ * to check if the location is out of the level, nor to read an ArrayList of BlockType.
+ *
+ * The matrix can't be modified while a level is loaded, so this copy never has to be updated.
+ *
+ * The grid also has a hash of its content (the size of the level and the cost of every location, walls included): two levels
+ * with the same blocks have the same hash, whatever their name or their robots, so the heuristics computed for one of them
+ * can be used for the other (see HeuristicCache.java).
+ */
+
+public final class CompiledGrid {
+
+    //Indexes of the directions in the neighbour table
+    public static final int LEFT = 0;
+    public static final int UP = 1;
+    public static final int RIGHT = 2;
+    public static final int DOWN = 3;
+    public static final int DIRECTIONS_NUMBER = 4;
+
+    private final int locationsNumber;
+    private final int columnNumber;
+    private final long[] walkableLocations;
+    private final int[] costs;
+    private final int[] neighbours;
+    private final long contentHash;
+
+    public CompiledGrid(ArrayList<BlockType> matrix, int columnNumber) {
+        this.locationsNumber = matrix.size();
+        this.columnNumber = columnNumber;
+        walkableLocations = new long[(locationsNumber + 63) >>> 6];
+        costs = new int[locationsNumber];
+        for (int location = 0; location < locationsNumber; location++) {
+            costs[location] = matrix.get(location).getCost();
+            if (matrix.get(location).isWalkable()) walkableLocations[location >>> 6] |= 1L << location;
+        }
+        neighbours = new int[locationsNumber * DIRECTIONS_NUMBER];
+        for (int location = 0; location < locationsNumber; location++) {
+            int column = location % columnNumber;
+            setNeighbour(location, LEFT, (column > 0) ? location - 1 : -1);
+            setNeighbour(location, UP, location - columnNumber);
+            setNeighbour(location, RIGHT, (column < columnNumber - 1) ? location + 1 : -1);
+            setNeighbour(location, DOWN, location + columnNumber);
+        }
+        contentHash = computeContentHash();
+    }
+
+    //The neighbours only depend on the walls and on the number of columns, so they don't need to be hashed
+    private long computeContentHash() {
+        long hash = 0x9E3779B97F4A7C15L * (columnNumber + 31L * locationsNumber);
+        for (int location = 0; location < locationsNumber; location++) {
+            hash = (hash ^ (isWalkable(location) ? costs[location] : -1)) * 0x100000001B3L;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+
+    //A neighbour is only kept if both locations are walkable
+    private void setNeighbour(int location, int direction, int neighbour) {
+        boolean isLinked = isWalkable(location) && neighbour >= 0 && neighbour < locationsNumber && isWalkable(neighbour);
+        neighbours[location * DIRECTIONS_NUMBER + direction] = isLinked ? neighbour : -1;
+    }
+
+    public boolean isWalkable(int location) {
+        return (walkableLocations[location >>> 6] & (1L << location)) != 0;
+    }
+
+    //Cost paid by a robot entering this location
+    public int getCost(int location) {
+        return costs[location];
+    }
+
+    //Returns the location reached from this location in this direction (LEFT, UP, RIGHT or DOWN), or -1 if it is not walkable
+    public int getNeighbour(int location, int direction) {
+        return neighbours[location * DIRECTIONS_NUMBER + direction];
+    }
+
+    //Returns the index of the direction in the neighbour table, or -1 for the NONE direction
+    public static int getDirectionIndex(Direction direction) {
+        if (direction == Direction.LEFT) return LEFT;
+        if (direction == Direction.UP) return UP;
+        if (direction == Direction.RIGHT) return RIGHT;
+        if (direction == Direction.DOWN) return DOWN;
+        return -1;
+    }
+
+    public int getLocationsNumber() {
+        return locationsNumber;
+    }
+
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+}
@@ -3,6 +3,9 @@ package files;
 import field.BlockType;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -31,6 +34,9 @@ import java.util.HashMap;
  *      WEEEW
  *      WWWWW
  *
+ * The levels of the game are read from the resources (e.g. "level1" is resources/levels/level1.txt). Any other level can be read
+ * from its file, by giving its path instead of its name (see BatchSolver.java).
+ *
  * The matrix is encoded into an 1D ArrayList (see matrix encoding info in Direction.java).
  * The robots initial positions and goals are stored into an hashMap.
  * These two containers will be retrieved in the constructor of SearchField.
@@ -53,11 +59,9 @@ public class FileRead {
     }
 
     //Reads a file and retrieves the data into the containers
-    private void readFile() {
-        //Get the file
-        InputStream inputStream = getClass().getResourceAsStream("/resources/levels/" + levelName + ".txt");
+    private void readFile() throws IOException {
         //Storing the content of the file into a BufferReader, then reading the BufferReader
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(inputStream))) {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(openFile()))) {
             //We define a line to read
             String line = br.readLine();
             //First lines correspond to the robots initial positions and goals
@@ -103,12 +107,18 @@ public class FileRead {
             for (Short elem : goalList) {
                 theMatrix.set(elem, BlockType.GOAL);
             }
-
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
+    //Get the file: a path to a level file, or the name of a level of the game
+    private InputStream openFile() throws IOException {
+        File file = new File(levelName);
+        if (file.isFile()) return new FileInputStream(file);
+        InputStream inputStream = getClass().getResourceAsStream("/resources/levels/" + levelName + ".txt");
+        if (inputStream == null) throw new FileNotFoundException("No level file or level of the game named " + levelName);
+        return inputStream;
+    }
+
     public short getRowNumberFromFile() {
         return rowNumber;
     }
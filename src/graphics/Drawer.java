@@ -4,11 +4,17 @@ import field.BlockType;
 import field.Direction;
 import robots.Robot;
 import search.SearchField;
+import search.SearchProgress;
 import search.heuristics.Dijkstra;
 import search.heuristics.Euclidean;
+import search.heuristics.Landmarks;
 import search.heuristics.Manhattan;
+import search.heuristics.Pairwise;
 
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 import static graphics.Color.*;
 
@@ -28,6 +34,15 @@ public class Drawer {
     private static float widthMultiplier;
 
     private SearchField searchField;
+    //The searches run in their own thread, so that the window is still drawn and its events handled while they search
+    //(and the robots can move while the anytime A* is still improving their paths)
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor((Runnable runnable) -> {
+        Thread thread = new Thread(runnable, "Search");
+        //The program can be closed while a search is running
+        thread.setDaemon(true);
+        return thread;
+    });
+    private SearchProgress searchProgress;
 
     private ArrayList<BlockType> blockTypesOrder;
     private short selectedRobotIndex = -1;
@@ -60,6 +75,8 @@ public class Drawer {
         selectedRobotIndex = -1;
         //Restart the inactivity sound
         playSound(inactivitySoundIndex);
+        //Stop the search still running on the previous level, if any (the level data is shared by the searches)
+        stopSearch();
         //Load the level data
         this.searchField = new SearchField(levelName);
         return true;
@@ -129,7 +146,8 @@ public class Drawer {
     }
 
     public void moveSelectedRobotManually(Direction direction) {
-        if (selectedRobotIndex != -1) {
+        //The robots can't be moved while a search starts from their locations
+        if (selectedRobotIndex != -1 && !isSearchRunning()) {
             searchField.getRobotData().moveRobotManually(selectedRobotIndex, direction);
         }
     }
@@ -295,26 +313,70 @@ public class Drawer {
     }
 
     public void launchAStarWithManhattan() {
-        selectedRobotIndex = -1;
-        if (!searchField.isSearchingOrDisplaying()) {
-            playSound(searchingSoundIndex);
-            searchField.AStar(new Manhattan(searchField));
-        }
+        launchSearch((SearchField levelSearchField) -> levelSearchField.AStar(new Manhattan(levelSearchField)));
     }
 
     public void launchAStarWithDijkstra() {
-        selectedRobotIndex = -1;
-        if (!searchField.isSearchingOrDisplaying()) {
-            playSound(searchingSoundIndex);
-            searchField.AStar(new Dijkstra(searchField));
-        }
+        launchSearch((SearchField levelSearchField) -> levelSearchField.AStar(new Dijkstra(levelSearchField)));
     }
 
     public void launchAStarWithEuclide() {
+        launchSearch((SearchField levelSearchField) -> levelSearchField.AStar(new Euclidean(levelSearchField)));
+    }
+
+    public void launchAStarWithPairwise() {
+        launchSearch((SearchField levelSearchField) -> levelSearchField.AStar(new Pairwise(levelSearchField)));
+    }
+
+    public void launchAStarWithLandmarks() {
+        launchSearch((SearchField levelSearchField) -> levelSearchField.AStar(new Landmarks(levelSearchField)));
+    }
+
+    public void launchConflictBasedSearch() {
+        launchSearch((SearchField levelSearchField) -> levelSearchField.conflictBasedSearch(new Dijkstra(levelSearchField)));
+    }
+
+    public void launchWindowedCooperativeAStar() {
+        launchSearch((SearchField levelSearchField) -> levelSearchField.windowedCooperativeAStar(new Dijkstra(levelSearchField)));
+    }
+
+    public void launchPrioritizedPlanning() {
+        launchSearch((SearchField levelSearchField) -> levelSearchField.prioritizedPlanning(new Dijkstra(levelSearchField)));
+    }
+
+    public void launchPortfolio() {
+        launchSearch(SearchField::portfolioSearch);
+    }
+
+    public void launchAnytimeAStar() {
+        launchSearch((SearchField levelSearchField) -> levelSearchField.anytimeAStar(new Dijkstra(levelSearchField)));
+    }
+
+    //The search (with the construction of its heuristic) runs in the search thread: this method returns at once
+    private void launchSearch(Consumer<SearchField> search) {
         selectedRobotIndex = -1;
-        if (!searchField.isSearchingOrDisplaying()) {
+        if (!searchField.isSearchingOrDisplaying() && !isSearchRunning()) {
             playSound(searchingSoundIndex);
-            searchField.AStar(new Euclidean(searchField));
+            //The robots are reset here, in the thread of the display which moves them, and not in the thread of the search
+            searchField.getRobotData().reInit();
+            searchProgress = searchField.submitSearch(searchExecutor, search);
         }
     }
-}
\ No newline at end of file
+
+    public boolean isSearchRunning() {
+        return searchProgress != null && !searchProgress.isDone();
+    }
+
+    //The progress of the search running, to be displayed (null if no search is running)
+    public String getSearchProgress() {
+        return isSearchRunning() ? searchProgress.toString() : null;
+    }
+
+    //Cancels the search running, and waits for its end
+    public void stopSearch() {
+        if (searchProgress == null) return;
+        searchProgress.cancel();
+        searchProgress.awaitEnd();
+        searchProgress = null;
+    }
+}
@@ -43,6 +43,9 @@ public class Window {
     private Texture texture;
 
     private boolean previousIsSearching = false, isSearching = false;
+    //The search launched last, and the title displayed
+    private String searchName = "";
+    private String title = "";
 
     public Window(Drawer drawer) {
         currentHeight = Window.HEIGHT;
@@ -85,17 +88,38 @@ public class Window {
             if (key == GLFW_KEY_ESCAPE && action == GLFW_RELEASE) {
                 glfwSetWindowShouldClose(window, true); // We will detect this in our rendering loop
             } else if (key == GLFW_KEY_D && action == GLFW_RELEASE) {                                   //Launch search algorithms
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName() + " - A* Searching: Dijkstra heuristic");
+                searchName = "A* Searching: Dijkstra heuristic";
                 drawer.launchAStarWithDijkstra();
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName());
             } else if (key == GLFW_KEY_SEMICOLON && action == GLFW_RELEASE) {
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName() + " - A* Searching: Manhattan heuristic");
+                searchName = "A* Searching: Manhattan heuristic";
                 drawer.launchAStarWithManhattan();
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName());
             } else if (key == GLFW_KEY_E && action == GLFW_RELEASE) {
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName() + " - A* Searching: Euclide heuristic");
+                searchName = "A* Searching: Euclide heuristic";
                 drawer.launchAStarWithEuclide();
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName());
+            } else if (key == GLFW_KEY_I && action == GLFW_RELEASE) {
+                searchName = "A* Searching: pairwise heuristic";
+                drawer.launchAStarWithPairwise();
+            } else if (key == GLFW_KEY_L && action == GLFW_RELEASE) {
+                searchName = "A* Searching: landmarks heuristic";
+                drawer.launchAStarWithLandmarks();
+            } else if (key == GLFW_KEY_C && action == GLFW_RELEASE) {
+                searchName = "Conflict-Based Search: Dijkstra heuristic";
+                drawer.launchConflictBasedSearch();
+            } else if (key == GLFW_KEY_H && action == GLFW_RELEASE) {
+                searchName = "Windowed Cooperative A*: Dijkstra heuristic";
+                drawer.launchWindowedCooperativeAStar();
+            } else if (key == GLFW_KEY_P && action == GLFW_RELEASE) {
+                searchName = "Prioritized planning: Dijkstra heuristic";
+                drawer.launchPrioritizedPlanning();
+            } else if (key == GLFW_KEY_F && action == GLFW_RELEASE) {
+                searchName = "Portfolio: heuristics and engines racing";
+                drawer.launchPortfolio();
+            } else if (key == GLFW_KEY_R && action == GLFW_RELEASE) {
+                //The robots start moving as soon as a first solution is found
+                searchName = "Anytime A*: Dijkstra heuristic";
+                drawer.launchAnytimeAStar();
+            } else if (key == GLFW_KEY_X && action == GLFW_RELEASE) {                                   //Cancel the search running
+                drawer.stopSearch();
             } else if (key == GLFW_KEY_S && action == GLFW_RELEASE) {                                   //Mute / UnMute
                 if (Window.MUTE) {
                     Window.MUTE = false;
@@ -115,52 +139,52 @@ public class Window {
             } else if (key == GLFW_KEY_0 && action == GLFW_RELEASE) {                                   //Load levels
                 isSearching = previousIsSearching = false;
                 drawer.setSearchField("level0");
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName());
+                updateTitle();
                 setDimensions();
             } else if (key == GLFW_KEY_1 && action == GLFW_RELEASE) {
                 isSearching = previousIsSearching = false;
                 drawer.setSearchField("level1");
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName());
+                updateTitle();
                 setDimensions();
             } else if (key == GLFW_KEY_2 && action == GLFW_RELEASE) {
                 isSearching = previousIsSearching = false;
                 drawer.setSearchField("level2");
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName());
+                updateTitle();
                 setDimensions();
             } else if (key == GLFW_KEY_3 && action == GLFW_RELEASE) {
                 isSearching = previousIsSearching = false;
                 drawer.setSearchField("level3");
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName());
+                updateTitle();
                 setDimensions();
             } else if (key == GLFW_KEY_4 && action == GLFW_RELEASE) {
                 isSearching = previousIsSearching = false;
                 drawer.setSearchField("level4");
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName());
+                updateTitle();
                 setDimensions();
             } else if (key == GLFW_KEY_5 && action == GLFW_RELEASE) {
                 isSearching = previousIsSearching = false;
                 drawer.setSearchField("level5");
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName());
+                updateTitle();
                 setDimensions();
             } else if (key == GLFW_KEY_6 && action == GLFW_RELEASE) {
                 isSearching = previousIsSearching = false;
                 drawer.setSearchField("level6");
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName());
+                updateTitle();
                 setDimensions();
             } else if (key == GLFW_KEY_7 && action == GLFW_RELEASE) {
                 isSearching = previousIsSearching = false;
                 drawer.setSearchField("level7");
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName());
+                updateTitle();
                 setDimensions();
             } else if (key == GLFW_KEY_8 && action == GLFW_RELEASE) {
                 isSearching = previousIsSearching = false;
                 drawer.setSearchField("level8");
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName());
+                updateTitle();
                 setDimensions();
             } else if (key == GLFW_KEY_9 && action == GLFW_RELEASE) {
                 isSearching = previousIsSearching = false;
                 drawer.setSearchField("level9");
-                glfwSetWindowTitle(window, DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName());
+                updateTitle();
                 setDimensions();
             } else if (key == GLFW_KEY_G && action == GLFW_RELEASE) {                                           //Toggle the use of bitmaps
                 USE_BITMAPS = !USE_BITMAPS;
@@ -227,6 +251,8 @@ public class Window {
                 drawer.playSound(drawer.goalReachedSoundIndex);
             }
             previousIsSearching = isSearching;
+            //The searches run in another thread: their progress is displayed in the title while they run
+            updateTitle();
 
             //Some necessary graphic commands
             glMatrixMode(GL_PROJECTION);
@@ -240,6 +266,16 @@ public class Window {
         }
     }
 
+    private void updateTitle() {
+        String searchProgress = drawer.getSearchProgress();
+        String newTitle = DEFAULT_WINDOW_NAME + " - " + drawer.getLevelName() + (searchProgress == null ? "" : " - " + searchName + " - " + searchProgress);
+        //The title only changes when the progress does (about every 100ms, see SearchProgress.toString())
+        if (!newTitle.equals(title)) {
+            title = newTitle;
+            glfwSetWindowTitle(window, title);
+        }
+    }
+
     private void loadTexture() {
         try {
             texture = new Texture("texture");
@@ -1,7 +1,7 @@
 package robots;
 
+import field.CompiledGrid;
 import field.Direction;
-import search.SearchField;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -17,6 +17,11 @@ import java.util.Stack;
  *      - Each robot directions stack (used to store the stack of moves that represents the robot's path found by the A* search).
  *      - A boolean for each robot (toBeDisplayed) indicating whether it has gone through its whole path yet or not.
  *      - A direction for each robot (lastDirection), useful to display it in the correct direction when it's moving on screen.
+ *
+ * A search running in another thread can also offer new plans (the paths of all robots) while the robots are going through
+ * the current one (see offerPlan()). The newest plan replaces the current one before the next move of the robots.
+ * The searches never change the robots themselves: only the thread of the display moves them, resets them (see reInit())
+ * and builds their stacks of directions from the plans offered.
  */
 
 public class RobotData {
@@ -26,8 +31,13 @@ public class RobotData {
     private ArrayList<Robot> robotsList;
     private ArrayList<Boolean> toBeDisplayed;
     private ArrayList<Direction> lastDirections;
+    //Plan offered by a search running in another thread, not followed by the robots yet
+    private volatile short[][] newestPlan;
+    //The map of the level, to check the moves of the robots
+    private final CompiledGrid grid;
 
-    public RobotData(HashMap<Short, Short> robotsKeyLocations) {
+    public RobotData(HashMap<Short, Short> robotsKeyLocations, CompiledGrid grid) {
+        this.grid = grid;
         keyLocations = new ArrayList<>();
         robotsList = new ArrayList<>();
         //Read of the locations list, which contains start and goal locations for robots. Key is Start, Value is Goal
@@ -60,7 +70,7 @@ public class RobotData {
                 return false;
             }
             //If there is still moves in the directions stack, we make sure the next location is walkable before doing anything, to avoid any misbehaviour
-            if (SearchField.canRobotMove(robotIndex, robotsList, directionStacks.get(robotIndex).peek())) {
+            if (canRobotMove(robotIndex, directionStacks.get(robotIndex).peek())) {
                 //If it is walkable and there was no other robot on the location, the move can be done
                 lastDirections.set(robotIndex, directionStacks.get(robotIndex).peek());
                 robotsList.get(robotIndex).move(popDirectionFromRobot(robotIndex));
@@ -74,6 +84,7 @@ public class RobotData {
     }
 
     public boolean moveRobots() {
+        switchToNewestPlan();
         //This is a method calling the method moveRobot() for each robot of the list.
         if (isSomethingBeingDisplayed()) {
             for (short robotIndex = 0; robotIndex < getRobotsNumber(); robotIndex++) {
@@ -90,12 +101,24 @@ public class RobotData {
         //The user has to wait that robots reach their goals before he can move them himself.
         if (!isSomethingBeingDisplayed()) {
             lastDirections.set(robotIndex, direction);
-            if (SearchField.canRobotMove(robotIndex, robotsList, direction)) {
+            if (canRobotMove(robotIndex, direction)) {
                 robotsList.get(robotIndex).move(direction);
             }
         }
     }
 
+    private boolean canRobotMove(short robotIndex, Direction direction) {
+        //A robot can move only if the aimed location is walkable and if there is no robot already there
+        int directionIndex = CompiledGrid.getDirectionIndex(direction);
+        if (directionIndex == -1) return false;
+        int newPos = grid.getNeighbour(robotsList.get(robotIndex).getCurrentLocation(), directionIndex);
+        if (newPos == -1) return false;
+        for (short robIndex = 0; robIndex < robotsList.size(); robIndex++) {
+            if (robotsList.get(robIndex).getCurrentLocation() == newPos) return false;
+        }
+        return true;
+    }
+
     private void updateKeyLocations() {
         ArrayList<KeyRobotLocations> newKeyLocations = new ArrayList<>();
         for (short i = 0; i < getRobotsNumber(); i++) {
@@ -104,6 +127,69 @@ public class RobotData {
         keyLocations = newKeyLocations;
     }
 
+    /**
+     * Replaces the directions stacks of the robots by the paths given, and lets the robots go through them.
+     *
+     * @param paths paths[robotIndex][step] is the location of the robot after this number of moves
+     * @param firstStep the step the robots are at: the moves before it are not stacked
+     */
+    public synchronized void setPlan(short[][] paths, int firstStep) {
+        clearDirectionStacks();
+        //For each robot, we start from the end of its path and go back to the first step.
+        //Between every location and the previous one we retrieve the direction it has taken, so the first move is on top of the stack.
+        //A robot whose path is shorter than the others just stays on its goal once its stack is empty.
+        for (short robotIndex = 0; robotIndex < paths.length; robotIndex++) {
+            for (int step = paths[robotIndex].length - 1; step > firstStep; step--) {
+                Direction direction = Direction.getDirectionWithValue((short) (paths[robotIndex][step] - paths[robotIndex][step - 1]));
+                stackDirectionForRobot(robotIndex, direction);
+            }
+        }
+        setAllRobotsToBeDisplayed(true);
+    }
+
+    //Can be called from another thread: the plan is only followed from the next move of the robots
+    public synchronized void offerPlan(short[][] paths) {
+        newestPlan = paths;
+    }
+
+    /**
+     * Makes the robots follow the newest plan offered, if there is one.
+     * If the robots are already at a step of this plan (their locations are the locations of this step), they go on from there.
+     * Else, they keep following their current plan, and the newest one is tried again before each of their moves: the robots never
+     * jump to other locations. Every plan ends with all the robots on their goals, so the switch happens at the latest when the
+     * current plan is over.
+     */
+    private synchronized void switchToNewestPlan() {
+        if (newestPlan == null) return;
+        short[][] paths = newestPlan;
+        int stepsNumber = 0;
+        for (short[] path : paths) stepsNumber = Math.max(stepsNumber, path.length);
+        for (int step = stepsNumber - 1; step >= 0; step--) {
+            if (areRobotsAtStep(paths, step)) {
+                newestPlan = null;
+                setPlan(paths, step);
+                return;
+            }
+        }
+        boolean isPlanFollowed = false;
+        for (short robotIndex = 0; robotIndex < getRobotsNumber(); robotIndex++) {
+            if (isToBeDisplayed(robotIndex)) isPlanFollowed = true;
+        }
+        //Robots standing still can't reach this plan anymore (it doesn't start from their locations)
+        if (!isPlanFollowed) {
+            System.out.println("Error in RobotData.switchToNewestPlan(): the robots are not on the plan offered -> stepsNumber=" + stepsNumber);
+            newestPlan = null;
+        }
+    }
+
+    private boolean areRobotsAtStep(short[][] paths, int step) {
+        for (short robotIndex = 0; robotIndex < getRobotsNumber(); robotIndex++) {
+            short[] path = paths[robotIndex];
+            if (path[Math.min(step, path.length - 1)] != robotsList.get(robotIndex).getCurrentLocation()) return false;
+        }
+        return true;
+    }
+
     public boolean isRobotOnItsGoal(short robotIndex) {
         if (robotIndex < getRobotsNumber()) {
             return (keyLocations.get(robotIndex).getGoalLocation() == robotsList.get(robotIndex).getCurrentLocation());
@@ -117,13 +203,15 @@ public class RobotData {
         //Those two methods are just here for safety, in theory they shouldn't be needed.
         setAllRobotsToBeDisplayed(false);
         clearDirectionStacks();
+        offerPlan(null);
         //Updating key locations is particularly important, because the user could have changed the robots initial
         //locations by moving them manually.
         updateKeyLocations();
     }
 
     public boolean isSomethingBeingDisplayed() {
-        boolean nothingDisplaying = false;
+        //A plan offered is displayed from the next move of the robots
+        boolean nothingDisplaying = (newestPlan != null);
         for (short robotIndex = 0; robotIndex < getRobotsNumber(); robotIndex++) {
             if (isToBeDisplayed(robotIndex)) nothingDisplaying = true;
         }
@@ -0,0 +1,213 @@
+package search;
+
+import search.heuristics.Heuristic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * This class is an anytime A* (ARA*: Anytime Repairing A*), which finds a first solution very quickly,
+ * then better and better solutions until the optimal one (see SearchField.anytimeAStar()).
+ *
+ * It is a weighted A*: the evaluation of a node is cost + weight * heuristic. With a weight higher than 1, the nodes closer
+ * to the goals are strongly preferred, so a solution is found after expanding much fewer nodes, but it may not be optimal:
+ * its cost is at most weight * (cost of the optimal solution).
+ * The search starts with INITIAL_WEIGHT. Each time a solution is found, it is published, and the weight is lowered by WEIGHT_STEP,
+ * until it reaches 1, where the solution found is optimal.
+ *
+ * Instead of starting a new search each time, the search goes on with the nodes it already has:
+ *      - The costs found and the visited table are kept.
+ *      - During a search with a given weight, each configuration is expanded at most once. If a cheaper path to an already
+ *        expanded configuration is found, it is not expanded again but put aside (in the "inconsistent" list).
+ *      - When the weight is lowered, the nodes of the priority queue and of the inconsistent list are put back into the priority queue
+ *        with their new evaluation.
+ * A search with a given weight stops as soon as the cost of the solution is not higher than the lowest evaluation in the priority queue
+ * (the costs of the moves are integers, so the integer evaluation of the nodes is used, see Node.getIntegerEvaluation()).
+ *
+ * With each solution, the search gives a bound of its suboptimality: the cost of the solution divided by the lowest
+ * (cost + heuristic) of the nodes left, which is lower than the cost of the optimal solution. It is never higher than the weight.
+ */
+
+public class AnytimeAStar {
+
+    private static final float INITIAL_WEIGHT = 3;
+    private static final float WEIGHT_STEP = 0.5f;
+
+    private final SearchField searchField;
+    private final Heuristic heuristic;
+
+    //Data of the current search
+    private short[] group;
+    private float weight;
+    private int iteration;
+    private OpenList openList;
+    private VisitedTable visitedTable;
+    //Nodes whose configuration got cheaper after having been expanded during the current iteration
+    private ArrayList<Node> inconsistentNodes;
+    //For each entry of the visited table: the last iteration during which it has been expanded
+    private int[] expansionIterations;
+    private int goalIndex;
+    private long nodesDequeued;
+    //Best solution found yet, or given by setInitialSolution()
+    private short[][] bestPaths;
+    private int bestCost = Integer.MAX_VALUE;
+
+    public AnytimeAStar(SearchField searchField, Heuristic heuristic) {
+        this.searchField = searchField;
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Gives a solution already known (e.g. by the prioritized planning, see SearchField.setWarmStart()), before searchGroup().
+     * It is returned if no cheaper solution is found, and the nodes which can't lead to a cheaper solution are never added to the priority queue.
+     */
+    public void setInitialSolution(short[][] paths, int cost) {
+        bestPaths = paths;
+        bestCost = cost;
+    }
+
+    /**
+     * Same as SearchField.searchGroup(), but every solution found is given to the planListener, from the worst to the best.
+     * The search can be stopped with SearchField.stopSearch(): the best solution found yet is then returned.
+     *
+     * @param planListener receives the paths of the robots of the group (paths[i][t] is the location of the robot group[i] after t moves)
+     * @return the best solution found, or null if no solution was found
+     */
+    public short[][] searchGroup(short[] group, Consumer<short[][]> planListener) {
+        this.group = group;
+        boolean isDecomposed = (searchField.getExpansionMode() == SearchField.ExpansionMode.OPERATOR_DECOMPOSITION);
+        long startTime = System.currentTimeMillis();
+        Node node = new Node(searchField.getStartLocations(group), isDecomposed);
+        openList = searchField.createOpenList();
+        visitedTable = searchField.createVisitedTable(node.getPackedLocations().length);
+        inconsistentNodes = new ArrayList<>();
+        expansionIterations = new int[1024];
+        goalIndex = -1;
+        weight = INITIAL_WEIGHT;
+        iteration = 1;
+        node.setIndex(visitedTable.add(node, -1));
+        if (searchField.areRobotsOnGoals(node, group)) goalIndex = node.getIndex();
+        node.setHeuristic(weight * heuristic.getTotalHeuristic(node, group));
+        openList.add(node);
+        BiPredicate<Node, Node> childHandler = this::handleChild;
+        //The children already visited with a lower or equal cost are not even created
+        JointMoveEnumerator jointMoves = isDecomposed ? null : new JointMoveEnumerator(searchField, group.length, (long[] key, int hash, int cost) -> {
+            int index = visitedTable.find(key, 0, hash);
+            return index == -1 || cost < visitedTable.getCost(index);
+        });
+
+        while (true) {
+            improvePath(jointMoves, childHandler);
+            if (searchField.isStopRequested()) break;
+            //Every node left goes back into the priority queue, with the next weight
+            ArrayList<Node> nodesLeft = takeNodesLeft();
+            if (goalIndex != -1 && visitedTable.getCost(goalIndex) < bestCost) {
+                bestCost = visitedTable.getCost(goalIndex);
+                bestPaths = visitedTable.extractPaths(goalIndex, (short) group.length, isDecomposed);
+                float bound = getSuboptimalityBound(nodesLeft, bestCost);
+                System.out.println("Solution found with weight " + weight + " after " + (System.currentTimeMillis() - startTime) / 1000f
+                        + "s: cost " + bestCost + ", at most " + bound + " times the optimal cost (nodes dequeued: " + nodesDequeued + ")");
+                planListener.accept(bestPaths);
+                if (bound <= 1) break;
+            }
+            //With a weight of 1, the search is a usual A*: the solution is optimal (or there is none)
+            if (weight <= 1 || nodesLeft.isEmpty()) break;
+            weight = Math.max(1, weight - WEIGHT_STEP);
+            iteration++;
+            for (Node nodeLeft : nodesLeft) {
+                nodeLeft.setHeuristic(weight * heuristic.getTotalHeuristic(nodeLeft, group));
+                openList.add(nodeLeft);
+            }
+        }
+
+        //The nodes expanded since the last report
+        searchField.getProgress().report(nodesDequeued % SearchProgress.REPORT_PERIOD, -1, -1);
+        searchField.getProgress().reportStorageBytes(visitedTable.getBytesUsed());
+        if (group.length < searchField.getRobotData().getRobotsNumber()) System.out.println("Group of robots " + Arrays.toString(group) + ":");
+        if (bestPaths != null)
+            System.out.println("Solution found in " + (System.currentTimeMillis() - startTime) / 1000f + "s!\nNodes dequeued: " + nodesDequeued);
+        else
+            System.out.println("Solution not found after " + (System.currentTimeMillis() - startTime) / 1000f + "s:\nNodes dequeued: " + nodesDequeued);
+        System.out.println(visitedTable);
+        if (bestPaths != null) System.out.println("Total cost of solution: " + bestCost + " (last weight: " + weight + ")");
+        return bestPaths;
+    }
+
+    //Expands the nodes of the priority queue until the solution is not more expensive than the lowest evaluation of the queue
+    private void improvePath(JointMoveEnumerator jointMoves, BiPredicate<Node, Node> childHandler) {
+        while (!openList.isEmpty() && !searchField.isStopRequested()) {
+            Node node = openList.peek();
+            //If a cheaper path to this configuration has been found since this node was queued, it has already been queued again: skip it
+            if (node.getCost() > visitedTable.getCost(node.getIndex())) {
+                openList.poll();
+                continue;
+            }
+            if (getSolutionCost() <= node.getIntegerEvaluation()) return;
+            openList.poll();
+            nodesDequeued++;
+            //Let the display know how far the search is (the evaluation is the weighted one)
+            if (nodesDequeued % SearchProgress.REPORT_PERIOD == 0)
+                searchField.getProgress().report(SearchProgress.REPORT_PERIOD, openList.size(), node.getIntegerEvaluation());
+            expansionIterations[node.getIndex()] = iteration;
+            //The solution does not need to be expanded
+            if (node.getIndex() != goalIndex) searchField.expandNode(node, jointMoves, childHandler);
+        }
+    }
+
+    private int getSolutionCost() {
+        if (goalIndex == -1) return bestCost;
+        return Math.min(bestCost, visitedTable.getCost(goalIndex));
+    }
+
+    private boolean handleChild(Node parent, Node nodeChild) {
+        int index = visitedTable.find(nodeChild);
+        if (index == -1) {
+            index = visitedTable.add(nodeChild, parent.getIndex());
+            if (index == expansionIterations.length) expansionIterations = Arrays.copyOf(expansionIterations, index * 2);
+            if (nodeChild.isStandardState() && searchField.areRobotsOnGoals(nodeChild, group)) goalIndex = index;
+        } else if (nodeChild.getCost() < visitedTable.getCost(index)) {
+            visitedTable.setCost(index, nodeChild.getCost());
+            visitedTable.setParent(index, parent.getIndex());
+        } else {
+            return false;
+        }
+        nodeChild.setIndex(index);
+        //Already expanded during this iteration: it will be expanded again during the next one
+        if (expansionIterations[index] == iteration) {
+            inconsistentNodes.add(nodeChild);
+            return false;
+        }
+        //With an admissible heuristic, a node whose (cost + heuristic) is not lower than the best solution can't lead to a cheaper one
+        float nodeHeuristic = heuristic.getTotalHeuristic(nodeChild, group);
+        nodeChild.setHeuristic(nodeHeuristic);
+        if (nodeChild.getIntegerEvaluation() >= bestCost) return false;
+        nodeChild.setHeuristic(weight * nodeHeuristic);
+        return openList.add(nodeChild);
+    }
+
+    //Empties the priority queue and the inconsistent list, and returns the nodes which are still useful
+    private ArrayList<Node> takeNodesLeft() {
+        ArrayList<Node> nodesLeft = new ArrayList<>();
+        while (!openList.isEmpty()) {
+            Node node = openList.poll();
+            if (node.getCost() == visitedTable.getCost(node.getIndex())) nodesLeft.add(node);
+        }
+        for (Node node : inconsistentNodes) {
+            if (node.getCost() == visitedTable.getCost(node.getIndex())) nodesLeft.add(node);
+        }
+        inconsistentNodes.clear();
+        return nodesLeft;
+    }
+
+    //Every cheaper solution would go through one of the nodes left, so its cost is at least the lowest (cost + heuristic) of these nodes
+    private float getSuboptimalityBound(ArrayList<Node> nodesLeft, int solutionCost) {
+        float lowestEvaluation = solutionCost;
+        for (Node node : nodesLeft) {
+            lowestEvaluation = Math.min(lowestEvaluation, node.getCost() + heuristic.getTotalHeuristic(node, group));
+        }
+        if (lowestEvaluation <= 0) return weight;
+        return Math.min(weight, solutionCost / lowestEvaluation);
+    }
+}
@@ -0,0 +1,111 @@
+package search;
+
+/**
+ * This class describes a conflict between the paths of two robots, i.e. a moment where the moves of both robots can't be done.
+ *
+ * When the robots go through their paths (see RobotData.moveRobots()), they move one after the other, by order of index,
+ * and a robot can't move to a location where there is a robot at this moment. So, for two robots A and B with A < B,
+ * going from step t to step t+1:
+ *      - A and B can't be on the same location at step t+1
+ *      - A can't go to the location B is leaving, because B has not moved yet when A moves
+ *        (this also forbids A and B to swap their locations)
+ *      - B can go to the location A is leaving, because A has already moved when B moves
+ * Once a robot has reached the end of its path, it stays on its last location.
+ *
+ * Both cases can be written the same way: robot A can't be on a location at a step, while robot B is on this same location
+ * at a (maybe different) step. So a conflict can always be solved by forbidding one of these two situations.
+ */
+
+public class Conflict {
+
+    private final short firstRobot;
+    private final int firstStep;
+    private final short secondRobot;
+    private final int secondStep;
+    private final short location;
+
+    public Conflict(short firstRobot, int firstStep, short secondRobot, int secondStep, short location) {
+        this.firstRobot = firstRobot;
+        this.firstStep = firstStep;
+        this.secondRobot = secondRobot;
+        this.secondStep = secondStep;
+        this.location = location;
+    }
+
+    //Returns the conflict which happens the earliest between the paths (paths[robotIndex][step]), or null if there is none
+    public static Conflict findFirstConflict(short[][] paths) {
+        int stepsNumber = 0;
+        for (short[] path : paths) stepsNumber = Math.max(stepsNumber, path.length);
+        for (int step = 0; step + 1 < stepsNumber; step++) {
+            for (short robotA = 0; robotA < paths.length; robotA++) {
+                short nextLocationA = getLocationAtStep(paths[robotA], step + 1);
+                for (short robotB = (short) (robotA + 1); robotB < paths.length; robotB++) {
+                    //Both robots on the same location
+                    if (nextLocationA == getLocationAtStep(paths[robotB], step + 1))
+                        return new Conflict(robotA, step + 1, robotB, step + 1, nextLocationA);
+                    //Robot A moving to the location robot B has not left yet
+                    if (nextLocationA == getLocationAtStep(paths[robotB], step))
+                        return new Conflict(robotA, step + 1, robotB, step, nextLocationA);
+                }
+            }
+        }
+        return null;
+    }
+
+    //Returns the number of conflicts between the paths, counted the same way
+    public static int countConflicts(short[][] paths) {
+        int stepsNumber = 0;
+        int conflictsNumber = 0;
+        for (short[] path : paths) stepsNumber = Math.max(stepsNumber, path.length);
+        for (int step = 0; step + 1 < stepsNumber; step++) {
+            for (short robotA = 0; robotA < paths.length; robotA++) {
+                for (short robotB = (short) (robotA + 1); robotB < paths.length; robotB++) {
+                    if (isInConflict(robotA, getLocationAtStep(paths[robotA], step + 1), step + 1, robotB, paths[robotB]))
+                        conflictsNumber++;
+                }
+            }
+        }
+        return conflictsNumber;
+    }
+
+    //True if the robot can't be on the location at this step, because of the path of another robot
+    public static boolean isInConflict(short robotIndex, short location, int step, short otherRobotIndex, short[] otherPath) {
+        if (location == getLocationAtStep(otherPath, step)) return true;
+        //The robot which moves first can't go to the location the other one has not left yet
+        if (robotIndex < otherRobotIndex) return step > 0 && location == getLocationAtStep(otherPath, step - 1);
+        return location == getLocationAtStep(otherPath, step + 1);
+    }
+
+    public static short getLocationAtStep(short[] path, int step) {
+        return path[Math.min(step, path.length - 1)];
+    }
+
+    public short getFirstRobot() {
+        return firstRobot;
+    }
+
+    public int getFirstStep() {
+        return firstStep;
+    }
+
+    public short getSecondRobot() {
+        return secondRobot;
+    }
+
+    public int getSecondStep() {
+        return secondStep;
+    }
+
+    public short getLocation() {
+        return location;
+    }
+
+    @Override
+    public String toString() {
+        return "Conflict{" +
+                "robot " + firstRobot + " at step " + firstStep +
+                ", robot " + secondRobot + " at step " + secondStep +
+                ", location=" + location +
+                '}';
+    }
+}
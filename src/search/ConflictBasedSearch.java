@@ -0,0 +1,265 @@
+package search;
+
+import search.heuristics.Heuristic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+
+/**
+ * This class is another search engine, which can replace the A* of SearchField (see SearchField.conflictBasedSearch()).
+ *
+ * The A* searches the moves of all robots together, so its number of states grows exponentially with the number of robots.
+ * The Conflict-Based Search searches the path of each robot alone, and handles the robots getting in the way of each other
+ * with constraints:
+ *      - The high level is a search in a tree of constraints. Every node of this tree contains a set of constraints
+ *        (a robot can't be on a location at a step), a path for every robot respecting its constraints, and the total cost of these paths.
+ *      - The root has no constraint: every robot takes its cheapest path to its goal, ignoring the others.
+ *      - The node of lowest cost is taken, and we look for the first conflict between its paths (see Conflict.java).
+ *        If there is none, its paths are the solution.
+ *      - Else, a conflict is always "robot A on a location at step tA while robot B is on this location at step tB".
+ *        Any solution avoids one of these two situations, so the node gets two children: one where robot A can't be on the location
+ *        at step tA, one where robot B can't be on the location at step tB. In each child, only the path of the constrained robot
+ *        is searched again, by the low level (see SpaceTimeAStar.java).
+ * As the nodes are taken by increasing cost, the first one without conflict is an optimal solution.
+ *
+ * In our levels, waiting costs nothing. So when two robots have to cross each other in a corridor, a constraint is always avoided
+ * by waiting one more step, for the same cost, and the conflict comes back one step later: the tree could grow forever
+ * without its cost ever increasing. So, when the robots of two groups have been in conflict more than MERGE_THRESHOLD times,
+ * both groups are merged, and the search restarts from a new root: the paths of the robots of a group are searched together
+ * by the low level, so they can't be in conflict anymore. In the worst case, all robots end up in the same group,
+ * and the search is the same as the A* (with the step in the states).
+ * Every restart happens after at most MERGE_THRESHOLD conflicts between each pair of groups, so the search always ends.
+ */
+
+public class ConflictBasedSearch {
+
+    //Groups whose robots have been in conflict more often than this are merged
+    private static final int MERGE_THRESHOLD = 8;
+
+    private final SearchField searchField;
+    private final SpaceTimeAStar lowLevelSearch;
+    private final short robotsNumber;
+    //Groups of robots whose paths are searched together, and index of the group of each robot
+    private final ArrayList<short[]> groups;
+    private final int[] groupOfRobot;
+    //Number of conflicts found between each pair of robots (conflictsCounts[robotA][robotB] with robotA < robotB)
+    private final int[][] conflictsCounts;
+    private long lowLevelSearchesNumber;
+
+    public ConflictBasedSearch(SearchField searchField, Heuristic heuristic) {
+        this.searchField = searchField;
+        this.lowLevelSearch = new SpaceTimeAStar(searchField, heuristic);
+        robotsNumber = searchField.getRobotData().getRobotsNumber();
+        groups = new ArrayList<>();
+        groupOfRobot = new int[robotsNumber];
+        conflictsCounts = new int[robotsNumber][robotsNumber];
+        //Every robot starts alone in its group
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            groupOfRobot[robotIndex] = groups.size();
+            groups.add(new short[]{robotIndex});
+        }
+    }
+
+    //Returns the paths of all robots (paths[robotIndex][step]), or null if no solution was found
+    public short[][] findPaths() {
+        long startTime = System.currentTimeMillis();
+        long nodesCreated = 0;
+        long nodesExpanded = 0;
+        int restartsNumber = 0;
+        //Among nodes of equal cost, the one with the fewest conflicts is taken first, then the oldest one
+        PriorityQueue<ConstraintNode> openList = new PriorityQueue<>((ConstraintNode node1, ConstraintNode node2) -> {
+            if (node1.cost != node2.cost) return Integer.compare(node1.cost, node2.cost);
+            if (node1.conflictsNumber != node2.conflictsNumber) return Integer.compare(node1.conflictsNumber, node2.conflictsNumber);
+            return Long.compare(node1.number, node2.number);
+        });
+
+        ConstraintNode root = createRoot(nodesCreated++);
+        if (root != null) openList.add(root);
+        while (!openList.isEmpty()) {
+            ConstraintNode node = openList.poll();
+            nodesExpanded++;
+            //Each node is a search of paths: the display is told about every one, and the search stops if it has been cancelled
+            if (searchField.getProgress().report(1, openList.size(), node.cost)) break;
+            Conflict conflict = Conflict.findFirstConflict(node.paths);
+            if (conflict == null) {
+                displayDiagnosis(true, startTime, nodesExpanded, nodesCreated, restartsNumber, node.cost);
+                return node.paths;
+            }
+            //Merge the groups of both robots if they get in the way of each other too often, and restart from a new root
+            conflictsCounts[conflict.getFirstRobot()][conflict.getSecondRobot()]++;
+            if (countGroupsConflicts(conflict.getFirstRobot(), conflict.getSecondRobot()) > MERGE_THRESHOLD) {
+                mergeGroups(conflict.getFirstRobot(), conflict.getSecondRobot());
+                restartsNumber++;
+                openList.clear();
+                root = createRoot(nodesCreated++);
+                if (root != null) openList.add(root);
+                continue;
+            }
+            //One child for each of the two situations of the conflict
+            ConstraintNode child = createChild(node, conflict.getFirstRobot(), conflict.getLocation(), conflict.getFirstStep(), nodesCreated);
+            if (child != null) {
+                openList.add(child);
+                nodesCreated++;
+            }
+            child = createChild(node, conflict.getSecondRobot(), conflict.getLocation(), conflict.getSecondStep(), nodesCreated);
+            if (child != null) {
+                openList.add(child);
+                nodesCreated++;
+            }
+        }
+        displayDiagnosis(false, startTime, nodesExpanded, nodesCreated, restartsNumber, 0);
+        return null;
+    }
+
+    //The root has no constraint: the paths of every group are searched, trying to avoid the paths of the groups searched before
+    private ConstraintNode createRoot(long number) {
+        ConstraintNode root = new ConstraintNode(null, (short) -1, (short) -1, -1, new short[robotsNumber][], number);
+        for (short[] group : groups) {
+            if (group != null && !searchGroup(root, group)) return null;
+        }
+        root.updateCost();
+        return root;
+    }
+
+    //Adds a constraint to a node, and searches again the paths of the group of the constrained robot. Returns null if it has no path anymore.
+    private ConstraintNode createChild(ConstraintNode parent, short robotIndex, short location, int step, long number) {
+        //A robot is always on its start location before moving: this situation can't be avoided
+        if (step == 0) return null;
+        ConstraintNode child = new ConstraintNode(parent, robotIndex, location, step, parent.paths.clone(), number);
+        if (!searchGroup(child, groups.get(groupOfRobot[robotIndex]))) return null;
+        child.updateCost();
+        return child;
+    }
+
+    //Searches the paths of a group with the constraints of a node, and stores them in the node. Returns false if there are none.
+    //The paths are searched with the paths of the other robots, to avoid them as much as possible.
+    private boolean searchGroup(ConstraintNode node, short[] group) {
+        lowLevelSearchesNumber++;
+        short[][] groupPaths = lowLevelSearch.findPaths(group, new GroupConstraints(node, group, robotsNumber), node.paths);
+        if (groupPaths == null) return false;
+        for (short robotIndex = 0; robotIndex < group.length; robotIndex++) {
+            node.paths[group[robotIndex]] = groupPaths[robotIndex];
+        }
+        return true;
+    }
+
+    //Number of conflicts found between the robots of the group of robotA and the robots of the group of robotB
+    private int countGroupsConflicts(short robotA, short robotB) {
+        int conflictsNumber = 0;
+        for (short robotIndexA : groups.get(groupOfRobot[robotA])) {
+            for (short robotIndexB : groups.get(groupOfRobot[robotB]))
+                conflictsNumber += conflictsCounts[robotIndexA][robotIndexB] + conflictsCounts[robotIndexB][robotIndexA];
+        }
+        return conflictsNumber;
+    }
+
+    //Robots of a group have to be in increasing order, because they move by order of index
+    private void mergeGroups(short robotA, short robotB) {
+        short[] firstGroup = groups.get(groupOfRobot[robotA]);
+        short[] secondGroup = groups.get(groupOfRobot[robotB]);
+        short[] mergedGroup = Arrays.copyOf(firstGroup, firstGroup.length + secondGroup.length);
+        System.arraycopy(secondGroup, 0, mergedGroup, firstGroup.length, secondGroup.length);
+        Arrays.sort(mergedGroup);
+        groups.set(groupOfRobot[robotB], null);
+        groups.set(groupOfRobot[robotA], mergedGroup);
+        for (short robotIndex : mergedGroup) groupOfRobot[robotIndex] = groupOfRobot[robotA];
+        System.out.println("Merged group of robots: " + Arrays.toString(mergedGroup));
+    }
+
+    private int getPathCost(short[] path) {
+        int cost = 0;
+        for (int step = 1; step < path.length; step++) {
+            //Waiting costs nothing
+            if (path[step] != path[step - 1]) cost += searchField.getBlockCost(path[step]);
+        }
+        return cost;
+    }
+
+    private void displayDiagnosis(boolean isSolutionFound, long startTime, long nodesExpanded, long nodesCreated, int restartsNumber, int cost) {
+        if (isSolutionFound)
+            System.out.println("Solution found in " + (System.currentTimeMillis() - startTime) / 1000f + "s!");
+        else
+            System.out.println("Solution not found after " + (System.currentTimeMillis() - startTime) / 1000f + "s:");
+        System.out.println("Constraint tree nodes expanded: " + nodesExpanded + "\nConstraint tree nodes created: " + nodesCreated + "\nRestarts: " + restartsNumber);
+        System.out.println("Low level searches: " + lowLevelSearchesNumber + "\nLow level nodes dequeued: " + lowLevelSearch.getNodesDequeued());
+        if (isSolutionFound) System.out.println("Total cost of solution: " + cost);
+    }
+
+    //A node of the constraint tree. It only stores the constraint added to its parent: its other constraints are those of its ancestors.
+    private class ConstraintNode {
+
+        private final ConstraintNode parent;
+        private final short robotIndex;
+        private final short location;
+        private final int step;
+        private final short[][] paths;
+        private final long number;
+        private int cost;
+        private int conflictsNumber;
+
+        private ConstraintNode(ConstraintNode parent, short robotIndex, short location, int step, short[][] paths, long number) {
+            this.parent = parent;
+            this.robotIndex = robotIndex;
+            this.location = location;
+            this.step = step;
+            this.paths = paths;
+            this.number = number;
+        }
+
+        private void updateCost() {
+            cost = 0;
+            for (short[] path : paths) cost += getPathCost(path);
+            conflictsNumber = Conflict.countConflicts(paths);
+        }
+    }
+
+    //Constraints of the robots of a group in a node of the constraint tree, gathered from the node and its ancestors
+    private static class GroupConstraints implements SpaceTimeConstraints {
+
+        //Keys are the step, the robot and the location packed in a long
+        private final HashSet<Long> forbiddenLocations = new HashSet<>();
+        //Keys are the robot and the location packed in an int
+        private final HashMap<Integer, Integer> lastForbiddenSteps = new HashMap<>();
+        private final int[] lastForbiddenStepOfRobot;
+
+        private GroupConstraints(ConstraintNode node, short[] group, short robotsNumber) {
+            lastForbiddenStepOfRobot = new int[robotsNumber];
+            Arrays.fill(lastForbiddenStepOfRobot, -1);
+            for (; node != null; node = node.parent) {
+                //The root has no constraint
+                if (node.robotIndex == -1 || Arrays.binarySearch(group, node.robotIndex) < 0) continue;
+                forbiddenLocations.add(getKey(node.robotIndex, node.location, node.step));
+                if (node.step > getLastForbiddenStep(node.robotIndex, node.location))
+                    lastForbiddenSteps.put(getKey(node.robotIndex, node.location), node.step);
+                lastForbiddenStepOfRobot[node.robotIndex] = Math.max(lastForbiddenStepOfRobot[node.robotIndex], node.step);
+            }
+        }
+
+        private static int getKey(short robotIndex, short location) {
+            return (robotIndex << 16) | (location & 0xFFFF);
+        }
+
+        private static long getKey(short robotIndex, short location, int step) {
+            return ((long) step << 32) | (getKey(robotIndex, location) & 0xFFFFFFFFL);
+        }
+
+        @Override
+        public boolean isForbidden(short robotIndex, short location, int step) {
+            return forbiddenLocations.contains(getKey(robotIndex, location, step));
+        }
+
+        @Override
+        public int getLastForbiddenStep(short robotIndex, short location) {
+            Integer step = lastForbiddenSteps.get(getKey(robotIndex, location));
+            return step == null ? -1 : step;
+        }
+
+        @Override
+        public int getLastForbiddenStep(short robotIndex) {
+            return lastForbiddenStepOfRobot[robotIndex];
+        }
+    }
+}
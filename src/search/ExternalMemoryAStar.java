@@ -0,0 +1,424 @@
+package search;
+
+import search.heuristics.Heuristic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * This class is an A* whose nodes are kept on the disk when they don't fit in the memory (External A*, see SearchField.setExternalMemory()).
+ * It finds the same optimal solutions as the A* of SearchField, for searches which would run out of heap.
+ *
+ * A node is a fixed-width record (packed locations, cost, reference to its parent, see RecordFile.java), and there is no
+ * hash table to find the configurations already visited: duplicates are removed later, in batches, by merging sorted lists.
+ *      - The open list is made of buckets: all the nodes of a bucket have the same cost g and the same heuristic h.
+ *        The buckets are expanded by increasing evaluation (g + h), then by decreasing cost, like the highest cost first
+ *        tie-breaking of the A*: the children of a node of the same evaluation have a higher cost (every move costs at least 1),
+ *        so they are expanded right after it, and the search goes straight to the goal instead of expanding every node of its evaluation.
+ *        A bucket which receives nodes again after being expanded is expanded again.
+ *      - Each bucket keeps its nodes in a buffer, in the heap. When the buffers hold more than the memory budget, the bucket
+ *        expanded the latest (the deepest) is sorted by configuration and written to its spill file, as a sorted run.
+ *      - To expand a bucket, its buffer is sorted, and merged with its runs: the copies of a configuration come out one after the other,
+ *        so only the first one is kept (delayed duplicate detection).
+ *      - A configuration already expanded has the same heuristic, so it can only be in a bucket of the same h and a lower or equal g
+ *        (with a consistent heuristic, the first expansion of a configuration is always with its lowest cost).
+ *        The nodes expanded from a bucket come out of the merge sorted, and are written in this order to the closed file:
+ *        each bucket expanded is a sorted range of the closed file (a layer), and the merge also goes through the layers
+ *        of the same h to remove the configurations already expanded.
+ *      - The closed file keeps the parent of every node expanded (the index of its record), so the paths are read back from it.
+ * Only the current buckets buffers are in the heap: the memory needed does not depend on the number of nodes explored,
+ * only the disk space does. The files are memory-mapped in the scratch directory, and deleted at the end of the search.
+ *
+ * The children are created with the JOINT_MOVES expansion mode (see JointMoveEnumerator.java), whatever the mode chosen:
+ * they are written into their bucket directly from the enumerator, without creating any Node.
+ */
+
+public class ExternalMemoryAStar {
+
+    private final SearchField searchField;
+    private final Heuristic heuristic;
+    private final File directory;
+    private final long memoryBudget;
+
+    //Data of the current search
+    private short[] group;
+    private int keyLength;
+    //Buckets of the open list, by increasing evaluation then decreasing cost (see getBucketKey())
+    private TreeMap<Long, Bucket> buckets;
+    private long bufferedRecords;
+    //Records in the buckets, in the heap or on the disk
+    private long openRecords;
+    private long maxBufferedRecords;
+    private RecordFile closedFile;
+    //Ranges of the closed file expanded from the buckets of each heuristic: {cost, first record, number of records}
+    private HashMap<Integer, ArrayList<long[]>> closedLayers;
+    //Index of the record of the node being expanded, parent of the children created
+    private long parentRecord;
+    private IOException writeError;
+
+    //Statistics
+    private long nodesExpanded;
+    private long recordsCreated;
+    private long duplicatesInBuckets;
+    private long duplicatesExpanded;
+    private long recordsSpilled;
+    private long runsWritten;
+    private long openBytesOnDisk;
+    private long maxBytesOnDisk;
+
+    /**
+     * @param directory    is the scratch directory where the files are created
+     * @param memoryBudget is the number of bytes the buffers of the buckets can use in the heap before being written to the disk
+     */
+    public ExternalMemoryAStar(SearchField searchField, Heuristic heuristic, File directory, long memoryBudget) {
+        this.searchField = searchField;
+        this.heuristic = heuristic;
+        this.directory = directory;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Same as SearchField.searchGroup().
+     *
+     * @return the paths of the robots of the group (paths[i][t] is the location of the robot group[i] after t moves),
+     * or null if no solution was found
+     */
+    public short[][] searchGroup(short[] group) {
+        this.group = group;
+        long startTime = System.currentTimeMillis();
+        Node root = new Node(searchField.getStartLocations(group), false);
+        keyLength = root.getPackedLocations().length;
+        buckets = new TreeMap<>();
+        closedLayers = new HashMap<>();
+        //A buffered record is the key and the parent
+        maxBufferedRecords = Math.max(1, memoryBudget / ((keyLength + 1) * Long.BYTES));
+        short[][] paths = null;
+        try {
+            closedFile = new RecordFile(directory, "astar-closed-", keyLength);
+            addRecord(root.getPackedLocations(), 0, -1);
+            //The children are written into their bucket by the filter, so the enumerator never creates a Node
+            JointMoveEnumerator jointMoves = new JointMoveEnumerator(searchField, group.length, (long[] key, int hash, int cost) -> {
+                try {
+                    addRecord(key, cost, parentRecord);
+                } catch (IOException e) {
+                    writeError = e;
+                }
+                return false;
+            });
+            long goalRecord = -1;
+            while (!buckets.isEmpty() && goalRecord == -1 && !searchField.isStopRequested()) {
+                Bucket bucket = buckets.pollFirstEntry().getValue();
+                goalRecord = expandBucket(bucket, root, jointMoves);
+                if (writeError != null) throw writeError;
+            }
+            if (goalRecord != -1) paths = extractPaths(goalRecord);
+        } catch (IOException e) {
+            System.out.println("Error in ExternalMemoryAStar.searchGroup(): the scratch files could not be written -> directory=" + directory);
+            e.printStackTrace();
+        } finally {
+            //The nodes expanded since the last report
+            searchField.getProgress().report(nodesExpanded % SearchProgress.REPORT_PERIOD, -1, -1);
+            displayDiagnosis(paths, startTime);
+            deleteFiles();
+        }
+        return paths;
+    }
+
+    //Merges the buffer and the runs of the bucket, removes the duplicates and the configurations already expanded,
+    //and expands the others. Returns the record of the goal if it is in the bucket, -1 otherwise.
+    private long expandBucket(Bucket bucket, Node root, JointMoveEnumerator jointMoves) throws IOException {
+        bucket.sortBuffer();
+        bufferedRecords -= bucket.bufferedCount;
+        openRecords -= bucket.bufferedCount;
+        for (long[] run : bucket.runs) openRecords -= run[1];
+        PriorityQueue<Cursor> openCursors = new PriorityQueue<>((Cursor cursor1, Cursor cursor2) -> compareKeys(cursor1.key, cursor2.key));
+        Cursor bufferCursor = new Cursor(bucket, null, 0, bucket.bufferedCount);
+        if (bufferCursor.next()) openCursors.add(bufferCursor);
+        for (long[] run : bucket.runs) {
+            Cursor runCursor = new Cursor(null, bucket.runsFile, run[0], run[1]);
+            if (runCursor.next()) openCursors.add(runCursor);
+        }
+        //Layers of the configurations of the same heuristic expanded before with a lower or equal cost
+        ArrayList<Cursor> closedCursors = new ArrayList<>();
+        ArrayList<long[]> layers = closedLayers.computeIfAbsent(bucket.heuristic, (Integer h) -> new ArrayList<>());
+        for (long[] layer : layers) {
+            if (layer[0] > bucket.cost) continue;
+            Cursor closedCursor = new Cursor(null, closedFile, layer[1], layer[2]);
+            if (closedCursor.next()) closedCursors.add(closedCursor);
+        }
+
+        long firstRecord = closedFile.size();
+        long[] key = new long[keyLength];
+        long goalRecord = -1;
+        SearchProgress searchProgress = searchField.getProgress();
+        while (!openCursors.isEmpty() && goalRecord == -1) {
+            Cursor cursor = openCursors.poll();
+            long parent = cursor.parent;
+            System.arraycopy(cursor.key, 0, key, 0, keyLength);
+            if (cursor.next()) openCursors.add(cursor);
+            //The other copies of this configuration in the bucket come right after it
+            while (!openCursors.isEmpty() && compareKeys(openCursors.peek().key, key) == 0) {
+                Cursor duplicate = openCursors.poll();
+                duplicatesInBuckets++;
+                if (duplicate.next()) openCursors.add(duplicate);
+            }
+            if (isExpanded(closedCursors, key)) {
+                duplicatesExpanded++;
+                continue;
+            }
+            parentRecord = closedFile.append(key, 0, bucket.cost, parent);
+            nodesExpanded++;
+            //Let the display know how far the search is, and stop if it has been cancelled
+            if (nodesExpanded % SearchProgress.REPORT_PERIOD == 0
+                    && searchProgress.report(SearchProgress.REPORT_PERIOD, (int) Math.min(Integer.MAX_VALUE, openRecords), bucket.cost + bucket.heuristic)) break;
+            Node node = new Node(bucket.cost, key, PackedLocations.hash(key, 0, keyLength), root);
+            if (searchField.areRobotsOnGoals(node, group)) goalRecord = parentRecord;
+            else jointMoves.expandNode(node, (Node parentNode, Node nodeChild) -> false);
+        }
+        if (closedFile.size() > firstRecord) layers.add(new long[]{bucket.cost, firstRecord, closedFile.size() - firstRecord});
+        updateDiskUsage();
+        if (bucket.runsFile != null) {
+            openBytesOnDisk -= bucket.runsFile.getBytesUsed();
+            bucket.runsFile.delete();
+        }
+        return goalRecord;
+    }
+
+    //The closed cursors only go forward: the keys of the bucket are checked in increasing order
+    private boolean isExpanded(ArrayList<Cursor> closedCursors, long[] key) {
+        for (int cursorIndex = closedCursors.size() - 1; cursorIndex >= 0; cursorIndex--) {
+            Cursor closedCursor = closedCursors.get(cursorIndex);
+            int comparison;
+            while ((comparison = compareKeys(closedCursor.key, key)) < 0) {
+                if (!closedCursor.next()) break;
+            }
+            if (comparison == 0) return true;
+            if (comparison < 0) closedCursors.remove(cursorIndex);
+        }
+        return false;
+    }
+
+    private void updateDiskUsage() {
+        maxBytesOnDisk = Math.max(maxBytesOnDisk, closedFile.getBytesUsed() + openBytesOnDisk);
+    }
+
+    //Sum of the heuristics of the robots, rounded up like Node.getIntegerEvaluation()
+    private int getHeuristic(long[] key) {
+        float totalHeuristic = 0;
+        for (short robotIndex = 0; robotIndex < group.length; robotIndex++)
+            totalHeuristic += heuristic.getHeuristicAtPos(PackedLocations.getLocation(key, 0, robotIndex), group[robotIndex]);
+        return (int) Math.ceil(totalHeuristic - 0.001f);
+    }
+
+    private void addRecord(long[] key, int cost, long parent) throws IOException {
+        int nodeHeuristic = getHeuristic(key);
+        Long bucketKey = getBucketKey(cost + nodeHeuristic, cost);
+        Bucket bucket = buckets.get(bucketKey);
+        if (bucket == null) {
+            bucket = new Bucket(cost, nodeHeuristic);
+            buckets.put(bucketKey, bucket);
+        }
+        bucket.add(key, parent);
+        recordsCreated++;
+        openRecords++;
+        if (++bufferedRecords > maxBufferedRecords) spillDeepestBucket();
+    }
+
+    //The buckets expanded the latest are written to the disk first
+    private void spillDeepestBucket() throws IOException {
+        for (Bucket bucket : buckets.descendingMap().values()) {
+            if (bucket.bufferedCount == 0) continue;
+            bufferedRecords -= bucket.bufferedCount;
+            bucket.spill();
+            return;
+        }
+    }
+
+    private static long getBucketKey(int evaluation, int cost) {
+        return ((long) evaluation << 32) | (Integer.MAX_VALUE - cost);
+    }
+
+    private static int compareKeys(long[] key1, long[] key2) {
+        for (int word = 0; word < key1.length; word++) {
+            if (key1[word] != key2[word]) return Long.compare(key1[word], key2[word]);
+        }
+        return 0;
+    }
+
+    //Every parent link is one move of the robots
+    private short[][] extractPaths(long goalRecord) {
+        ArrayList<long[]> keys = new ArrayList<>();
+        for (long record = goalRecord; record != -1; record = closedFile.getParent(record)) {
+            long[] key = new long[keyLength];
+            closedFile.readKey(record, key, 0);
+            keys.add(key);
+        }
+        short[][] paths = new short[group.length][keys.size()];
+        for (int step = 0; step < keys.size(); step++) {
+            long[] key = keys.get(keys.size() - 1 - step);
+            for (short robotIndex = 0; robotIndex < group.length; robotIndex++) paths[robotIndex][step] = PackedLocations.getLocation(key, 0, robotIndex);
+        }
+        return paths;
+    }
+
+    private void deleteFiles() {
+        if (closedFile != null) closedFile.delete();
+        for (Bucket bucket : buckets.values()) {
+            if (bucket.runsFile != null) bucket.runsFile.delete();
+        }
+        buckets.clear();
+    }
+
+    private void displayDiagnosis(short[][] paths, long startTime) {
+        if (group.length < searchField.getRobotData().getRobotsNumber()) System.out.println("Group of robots " + Arrays.toString(group) + ":");
+        if (paths != null)
+            System.out.println("Solution found in " + (System.currentTimeMillis() - startTime) / 1000f + "s!\nNodes expanded: " + nodesExpanded);
+        else
+            System.out.println("Solution not found after " + (System.currentTimeMillis() - startTime) / 1000f + "s:\nNodes expanded: " + nodesExpanded);
+        System.out.println(this);
+        if (paths != null) System.out.println("Total cost of solution: " + searchField.getPathsCost(paths));
+    }
+
+    @Override
+    public String toString() {
+        return "ExternalMemoryAStar{" +
+                "recordsCreated=" + recordsCreated +
+                ", duplicatesInBuckets=" + duplicatesInBuckets +
+                ", duplicatesExpanded=" + duplicatesExpanded +
+                ", recordsSpilled=" + recordsSpilled +
+                ", runsWritten=" + runsWritten +
+                ", maxBytesOnDisk=" + maxBytesOnDisk +
+                ", directory=" + directory +
+                '}';
+    }
+
+    //The nodes of the open list of cost g and heuristic h
+    private class Bucket {
+
+        private final int cost;
+        private final int heuristic;
+        //Records in the heap: the key, then the parent
+        private long[] buffer = new long[0];
+        private int bufferedCount;
+        //Sorted runs written to the disk: {first record, number of records}
+        private RecordFile runsFile;
+        private final ArrayList<long[]> runs = new ArrayList<>();
+
+        private Bucket(int cost, int heuristic) {
+            this.cost = cost;
+            this.heuristic = heuristic;
+        }
+
+        private void add(long[] key, long parent) {
+            int stride = keyLength + 1;
+            if ((bufferedCount + 1) * stride > buffer.length) buffer = Arrays.copyOf(buffer, Math.max(16 * stride, buffer.length * 2));
+            System.arraycopy(key, 0, buffer, bufferedCount * stride, keyLength);
+            buffer[bufferedCount * stride + keyLength] = parent;
+            bufferedCount++;
+        }
+
+        private void spill() throws IOException {
+            if (runsFile == null) runsFile = new RecordFile(directory, "astar-open-", keyLength);
+            sortBuffer();
+            int stride = keyLength + 1;
+            long firstRecord = runsFile.size();
+            long bytesBefore = runsFile.getBytesUsed();
+            for (int record = 0; record < bufferedCount; record++) runsFile.append(buffer, record * stride, cost, buffer[record * stride + keyLength]);
+            runs.add(new long[]{firstRecord, bufferedCount});
+            recordsSpilled += bufferedCount;
+            runsWritten++;
+            openBytesOnDisk += runsFile.getBytesUsed() - bytesBefore;
+            updateDiskUsage();
+            buffer = new long[0];
+            bufferedCount = 0;
+        }
+
+        private void sortBuffer() {
+            sortRecords(0, bufferedCount - 1);
+        }
+
+        //Quicksort of the records of the buffer by key (the records can't be sorted by Arrays.sort(), they are several longs).
+        //The records equal to the pivot are gathered in the middle, so the many copies of a configuration don't slow it down.
+        private void sortRecords(int low, int high) {
+            while (low < high) {
+                swapRecords((low + high) >>> 1, low);
+                //Records in [low, lower) are smaller than the pivot (at lower), in [lower, current) equal to it, in (higher, high] bigger
+                int lower = low;
+                int current = low + 1;
+                int higher = high;
+                while (current <= higher) {
+                    int comparison = compareRecords(current, lower);
+                    if (comparison < 0) swapRecords(current++, lower++);
+                    else if (comparison > 0) swapRecords(current, higher--);
+                    else current++;
+                }
+                //The smaller part is sorted by recursion, the bigger one by the loop, so the recursion stays shallow
+                if (lower - low < high - higher) {
+                    sortRecords(low, lower - 1);
+                    low = higher + 1;
+                } else {
+                    sortRecords(higher + 1, high);
+                    high = lower - 1;
+                }
+            }
+        }
+
+        private int compareRecords(int record1, int record2) {
+            int stride = keyLength + 1;
+            for (int word = 0; word < keyLength; word++) {
+                long word1 = buffer[record1 * stride + word];
+                long word2 = buffer[record2 * stride + word];
+                if (word1 != word2) return Long.compare(word1, word2);
+            }
+            return 0;
+        }
+
+        private void swapRecords(int record1, int record2) {
+            if (record1 == record2) return;
+            int stride = keyLength + 1;
+            for (int word = 0; word < stride; word++) {
+                long temporary = buffer[record1 * stride + word];
+                buffer[record1 * stride + word] = buffer[record2 * stride + word];
+                buffer[record2 * stride + word] = temporary;
+            }
+        }
+    }
+
+    //Reads a sorted list of records, from the buffer of a bucket or from a range of a file
+    private class Cursor {
+
+        private final Bucket bucket;
+        private final RecordFile file;
+        private long position;
+        private final long end;
+        private final long[] key = new long[keyLength];
+        private long parent;
+
+        private Cursor(Bucket bucket, RecordFile file, long first, long count) {
+            this.bucket = bucket;
+            this.file = file;
+            this.position = first;
+            this.end = first + count;
+        }
+
+        //Moves to the next record, returns false if there is none
+        private boolean next() {
+            if (position == end) return false;
+            if (bucket != null) {
+                int stride = keyLength + 1;
+                System.arraycopy(bucket.buffer, (int) position * stride, key, 0, keyLength);
+                parent = bucket.buffer[(int) position * stride + keyLength];
+            } else {
+                file.readKey(position, key, 0);
+                parent = file.getParent(position);
+            }
+            position++;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package search;
+
+import java.util.Arrays;
+
+/**
+ * This class stores the entries of a VisitedTable on the heap (see NodeStorage.java).
+ *
+ * They are stored by chunks of primitive arrays: adding a chunk never copies the previous ones.
+ * Arrays of primitives hold no reference, so the garbage collector never has to go through them, but they are still copied
+ * when the heap is compacted: with tens of millions of entries, this is what OffHeapNodeStorage.java avoids.
+ */
+
+public class HeapNodeStorage implements NodeStorage {
+
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int keyLength;
+    private long[][] keyChunks;
+    private int[][] costChunks;
+    private int[][] parentChunks;
+    private int[][] hashChunks;
+    private int size;
+    private int chunksNumber;
+
+    public HeapNodeStorage(int keyLength) {
+        this.keyLength = keyLength;
+        keyChunks = new long[1][];
+        costChunks = new int[1][];
+        parentChunks = new int[1][];
+        hashChunks = new int[1][];
+    }
+
+    @Override
+    public int add(long[] key, int offset, int hash, int cost, int parentIndex) {
+        int index = size;
+        int chunkIndex = index >>> CHUNK_BITS;
+        if (chunkIndex == keyChunks.length) addChunksRow();
+        if (keyChunks[chunkIndex] == null) {
+            keyChunks[chunkIndex] = new long[CHUNK_SIZE * keyLength];
+            costChunks[chunkIndex] = new int[CHUNK_SIZE];
+            parentChunks[chunkIndex] = new int[CHUNK_SIZE];
+            hashChunks[chunkIndex] = new int[CHUNK_SIZE];
+            chunksNumber++;
+        }
+        int position = index & CHUNK_MASK;
+        System.arraycopy(key, offset, keyChunks[chunkIndex], position * keyLength, keyLength);
+        costChunks[chunkIndex][position] = cost;
+        parentChunks[chunkIndex][position] = parentIndex;
+        hashChunks[chunkIndex][position] = hash;
+        size++;
+        return index;
+    }
+
+    private void addChunksRow() {
+        int newLength = keyChunks.length * 2;
+        keyChunks = Arrays.copyOf(keyChunks, newLength);
+        costChunks = Arrays.copyOf(costChunks, newLength);
+        parentChunks = Arrays.copyOf(parentChunks, newLength);
+        hashChunks = Arrays.copyOf(hashChunks, newLength);
+    }
+
+    @Override
+    public boolean isKeyEqual(int index, long[] key, int offset) {
+        return PackedLocations.equals(key, offset, keyChunks[index >>> CHUNK_BITS], (index & CHUNK_MASK) * keyLength, keyLength);
+    }
+
+    @Override
+    public int getHash(int index) {
+        return hashChunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    @Override
+    public int getCost(int index) {
+        return costChunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    @Override
+    public void setCost(int index, int cost) {
+        costChunks[index >>> CHUNK_BITS][index & CHUNK_MASK] = cost;
+    }
+
+    @Override
+    public int getParent(int index) {
+        return parentChunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    @Override
+    public void setParent(int index, int parentIndex) {
+        parentChunks[index >>> CHUNK_BITS][index & CHUNK_MASK] = parentIndex;
+    }
+
+    @Override
+    public short getRobotLocation(int index, short robotIndex) {
+        return PackedLocations.getLocation(keyChunks[index >>> CHUNK_BITS], (index & CHUNK_MASK) * keyLength, robotIndex);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getBytesUsed() {
+        return (long) chunksNumber * CHUNK_SIZE * (keyLength * Long.BYTES + 3 * Integer.BYTES);
+    }
+
+    @Override
+    public String toString() {
+        return "heap storage of " + getBytesUsed() + " bytes";
+    }
+}
@@ -0,0 +1,92 @@
+package search;
+
+import search.heuristics.Heuristic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class is a front end of the A* search, which avoids searching the paths of all robots together when it is not needed.
+ *
+ * The size of the search tree grows exponentially with the number of robots searched together. But in most levels,
+ * many robots never get in the way of each other, and their paths could be searched separately. So:
+ *      - First, every robot is put alone in its own group, and the path of each group is searched (SearchField.searchGroup()).
+ *        For a single robot, this is very fast: its heuristic (with Dijkstra) is already the exact cost to its goal.
+ *      - Then, we look for a conflict between the paths found (see Conflict.java).
+ *      - If there is one, the groups of both robots are merged, and the paths of the robots of the new group are searched together,
+ *        ignoring the other groups. Then we look for conflicts again.
+ *      - When there is no conflict anymore, the paths of all groups can be followed at the same time.
+ *
+ * The solution is still optimal: the cost of the paths of a group searched alone can't be higher than the cost of the same
+ * robots in a solution for all robots, because other robots can only get in their way.
+ * The cost of the search is the cost of the search of the biggest group of robots which really get in the way of each other.
+ */
+
+public class IndependenceDetection {
+
+    private final SearchField searchField;
+    private final Heuristic heuristic;
+
+    public IndependenceDetection(SearchField searchField, Heuristic heuristic) {
+        this.searchField = searchField;
+        this.heuristic = heuristic;
+    }
+
+    //Returns the paths of all robots (paths[robotIndex][step]), or null if no solution was found
+    public short[][] findPaths() {
+        short robotsNumber = searchField.getRobotData().getRobotsNumber();
+        short[][] paths = new short[robotsNumber][];
+        //groupOfRobot[i] is the index in the groups list of the group containing the robot i
+        int[] groupOfRobot = new int[robotsNumber];
+        ArrayList<short[]> groups = new ArrayList<>();
+        //Every robot starts alone in its group
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            groupOfRobot[robotIndex] = groups.size();
+            groups.add(new short[]{robotIndex});
+            if (!searchGroup(groups.get(groupOfRobot[robotIndex]), paths)) return null;
+        }
+        Conflict conflict = Conflict.findFirstConflict(paths);
+        int mergesNumber = 0;
+        while (conflict != null) {
+            mergesNumber++;
+            //Merge the group of the second robot into the group of the first one
+            int firstGroup = groupOfRobot[conflict.getFirstRobot()];
+            int secondGroup = groupOfRobot[conflict.getSecondRobot()];
+            short[] mergedGroup = mergeGroups(groups.get(firstGroup), groups.get(secondGroup));
+            groups.set(firstGroup, mergedGroup);
+            groups.set(secondGroup, null);
+            for (short robotIndex : mergedGroup) groupOfRobot[robotIndex] = firstGroup;
+            //Search the paths of the robots of the merged group together
+            if (!searchGroup(mergedGroup, paths)) return null;
+            conflict = Conflict.findFirstConflict(paths);
+        }
+        displayGroups(groups, mergesNumber);
+        return paths;
+    }
+
+    //Searches the paths of a group and stores them in the paths of all robots. Returns false if no solution was found.
+    private boolean searchGroup(short[] group, short[][] paths) {
+        short[][] groupPaths = searchField.searchGroup(group, heuristic);
+        if (groupPaths == null) return false;
+        for (short robotIndex = 0; robotIndex < group.length; robotIndex++) {
+            paths[group[robotIndex]] = groupPaths[robotIndex];
+        }
+        return true;
+    }
+
+    //Robots of a group have to be in increasing order, because they move by order of index
+    private static short[] mergeGroups(short[] group1, short[] group2) {
+        short[] mergedGroup = Arrays.copyOf(group1, group1.length + group2.length);
+        System.arraycopy(group2, 0, mergedGroup, group1.length, group2.length);
+        Arrays.sort(mergedGroup);
+        return mergedGroup;
+    }
+
+    private static void displayGroups(ArrayList<short[]> groups, int mergesNumber) {
+        String output = "Independent groups of robots:";
+        for (short[] group : groups) {
+            if (group != null) output += " " + Arrays.toString(group);
+        }
+        System.out.println(output + " (after " + mergesNumber + " merges)");
+    }
+}
@@ -0,0 +1,144 @@
+package search;
+
+import search.heuristics.Heuristic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * This class is an Iterative Deepening A* (IDA*), which can replace the A* of SearchField (see SearchField.setIterativeDeepening()).
+ *
+ * The A* keeps every node it has created, in its priority queue and its visited table: on big levels, the memory is full
+ * long before the search is over. The IDA* only keeps the nodes of the path it is exploring:
+ *      - The threshold starts at the evaluation (cost + heuristic) of the initial node.
+ *      - A depth-first search explores every path from the initial node, but leaves a path as soon as the evaluation of its last node
+ *        is higher than the threshold.
+ *      - If a solution is found, the search is over. Else, the threshold becomes the lowest evaluation which was higher than it,
+ *        and the depth-first search starts again.
+ * Every node whose evaluation is lower than the cost of the best solution is explored before the threshold reaches this cost,
+ * so the first solution found is optimal (the costs of the moves are integers, so the integer evaluation of the nodes is used,
+ * see Node.getIntegerEvaluation()).
+ *
+ * A depth-first search does not know which configurations it has already explored, so the same configuration can be explored
+ * many times through different paths. A small transposition table (see TranspositionTable.java) remembers the lowest cost
+ * at which a configuration was reached during the iteration, and a path reaching it again without a lower cost is left.
+ * Configurations which are on the current path are never explored again, so the robots can't go around in circles.
+ *
+ * The memory used is the transposition table, whose size is fixed (see SearchField.setTranspositionTableSize()),
+ * and the current path: it does not grow with the number of nodes explored.
+ */
+
+public class IterativeDeepeningAStar {
+
+    private final SearchField searchField;
+    private final Heuristic heuristic;
+    private final int transpositionTableSize;
+
+    //Data of the current search
+    private short[] group;
+    private JointMoveEnumerator jointMoves;
+    private TranspositionTable transpositionTable;
+    private final ArrayList<Node> path = new ArrayList<>();
+    private final HashSet<Node> pathNodes = new HashSet<>();
+    private int threshold;
+    private int nextThreshold;
+    private long nodesExpanded;
+
+    public IterativeDeepeningAStar(SearchField searchField, Heuristic heuristic, int transpositionTableSize) {
+        this.searchField = searchField;
+        this.heuristic = heuristic;
+        this.transpositionTableSize = transpositionTableSize;
+    }
+
+    /**
+     * Same as SearchField.searchGroup()
+     *
+     * @param group contains the indexes of the robots of the group, in increasing order
+     * @return the paths of the robots of the group (paths[i][t] is the location of the robot group[i] after t moves),
+     * or null if no solution was found
+     */
+    public short[][] searchGroup(short[] group) {
+        this.group = group;
+        boolean isDecomposed = (searchField.getExpansionMode() == SearchField.ExpansionMode.OPERATOR_DECOMPOSITION);
+        jointMoves = isDecomposed ? null : new JointMoveEnumerator(searchField, group.length, null);
+        Node root = new Node(searchField.getStartLocations(group), isDecomposed);
+        root.setHeuristic(heuristic.getTotalHeuristic(root, group));
+        transpositionTable = new TranspositionTable(transpositionTableSize, root.getPackedLocations().length);
+        long startTime = System.currentTimeMillis();
+        boolean isSolutionFound = false;
+        int iterationsNumber = 0;
+
+        threshold = root.getIntegerEvaluation();
+        while (true) {
+            iterationsNumber++;
+            long nodesExpandedBefore = nodesExpanded;
+            nextThreshold = Integer.MAX_VALUE;
+            transpositionTable.clear();
+            path.clear();
+            pathNodes.clear();
+            isSolutionFound = transpositionTable.record(root) && search(root);
+            System.out.println("Iteration " + iterationsNumber + ": threshold=" + threshold + ", nodes expanded: " + (nodesExpanded - nodesExpandedBefore));
+            //Stop if a solution is found, or if no node was left because of the threshold (there is no solution)
+            if (isSolutionFound || nextThreshold == Integer.MAX_VALUE || searchField.isStopRequested()) break;
+            threshold = nextThreshold;
+        }
+
+        //The nodes expanded since the last report
+        searchField.getProgress().report(nodesExpanded % SearchProgress.REPORT_PERIOD, -1, -1);
+        if (group.length < searchField.getRobotData().getRobotsNumber()) System.out.println("Group of robots " + Arrays.toString(group) + ":");
+        if (isSolutionFound)
+            System.out.println("Solution found in " + (System.currentTimeMillis() - startTime) / 1000f + "s!");
+        else
+            System.out.println("Solution not found after " + (System.currentTimeMillis() - startTime) / 1000f + "s:");
+        System.out.println("Iterations: " + iterationsNumber + "\nNodes expanded: " + nodesExpanded);
+        System.out.println(transpositionTable);
+        if (!isSolutionFound) return null;
+        System.out.println("Total cost of solution: " + path.get(path.size() - 1).getCost());
+        return extractPaths(isDecomposed);
+    }
+
+    //Depth-first search from the node, which is the last node of the current path. Returns true if a solution has been found.
+    private boolean search(Node node) {
+        path.add(node);
+        pathNodes.add(node);
+        if (node.isStandardState() && searchField.areRobotsOnGoals(node, group)) return true;
+        nodesExpanded++;
+        //Let the display know how far the search is, and leave the whole path if it has been cancelled
+        if (nodesExpanded % SearchProgress.REPORT_PERIOD == 0 && searchField.getProgress().report(SearchProgress.REPORT_PERIOD, path.size(), threshold))
+            return false;
+        ArrayList<Node> children = new ArrayList<>();
+        searchField.expandNode(node, jointMoves, (Node parent, Node nodeChild) -> children.add(nodeChild));
+        for (Node nodeChild : children) nodeChild.setHeuristic(heuristic.getTotalHeuristic(nodeChild, group));
+        //The most promising children are explored first, so that the solution is found early in the last iteration
+        children.sort((Node node1, Node node2) -> Integer.compare(node1.getIntegerEvaluation(), node2.getIntegerEvaluation()));
+        for (Node nodeChild : children) {
+            if (nodeChild.getIntegerEvaluation() > threshold) {
+                nextThreshold = Math.min(nextThreshold, nodeChild.getIntegerEvaluation());
+                //The next children are even worse
+                break;
+            }
+            if (pathNodes.contains(nodeChild) || !transpositionTable.record(nodeChild)) continue;
+            if (search(nodeChild)) return true;
+            if (searchField.isStopRequested()) break;
+        }
+        path.remove(path.size() - 1);
+        pathNodes.remove(node);
+        return false;
+    }
+
+    //The current path goes from the initial node to the solution
+    //(with the operator decomposition, intermediate states, where only some robots have moved, are skipped)
+    private short[][] extractPaths(boolean isDecomposed) {
+        ArrayList<Node> states = new ArrayList<>();
+        for (Node node : path) {
+            if (!isDecomposed || node.isStandardState()) states.add(node);
+        }
+        short[][] paths = new short[group.length][states.size()];
+        for (int step = 0; step < states.size(); step++) {
+            for (short robotIndex = 0; robotIndex < group.length; robotIndex++)
+                paths[robotIndex][step] = states.get(step).getRobotLocation(robotIndex);
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,164 @@
+package search;
+
+import field.CompiledGrid;
+
+import java.util.function.BiPredicate;
+
+/**
+ * This class creates the children of a node for the JOINT_MOVES expansion mode (see SearchField.expandNode()),
+ * i.e. every combination of moves of the robots, without allocating anything for the children which are not kept.
+ *
+ * The combinations are gone through like an odometer: each robot is a digit, whose value is the index of its move
+ * (LEFT, UP, RIGHT, DOWN, NONE), and the last robot turns the fastest. The robots move one after the other, by order
+ * of index, so when a digit changes, only the robots after it have to be moved again: the locations of the robots
+ * and the cost reached after each digit are kept in primitive arrays, which are allocated once for the whole search.
+ *      - The location reached by a move and its cost are read from the compiled grid (see CompiledGrid.java), and the
+ *        locations taken by the robots are marked in a bitset.
+ *      - A move towards a wall or another robot is left at once, with every combination using it: the same children
+ *        are created with the NONE move of this robot, which costs the same.
+ *      - When every robot has a move, the configuration is packed into a scratch key, and the ChildFilter (if any)
+ *        tells from the key, its hashcode and its cost if the child is worth creating, e.g. if it is not already
+ *        in the visited table with a lower or equal cost.
+ *      - Only then a Node is created and given, with its parent, to the childHandler.
+ * So a child which is thrown away costs no allocation at all.
+ *
+ * An enumerator keeps the state of the current expansion: each thread needs its own one.
+ */
+
+public class JointMoveEnumerator {
+
+    //Tells whether the child whose packed locations are key (first words of the array) and whose cost is cost has to be created
+    public interface ChildFilter {
+        boolean isWorthCreating(long[] key, int hash, int cost);
+    }
+
+    //The moves LEFT, UP, RIGHT and DOWN are the indexes of the directions in the compiled grid, NONE is the last one
+    private static final int NONE = CompiledGrid.DIRECTIONS_NUMBER;
+    private static final int MOVES_NUMBER = NONE + 1;
+
+    private final CompiledGrid grid;
+    private final ChildFilter childFilter;
+    private final int robotsNumber;
+
+    //Data of the current expansion
+    private final int[] digits;
+    private final short[] parentLocations;
+    private final short[] locations;
+    //costs[i] and movedRobots[i] are the cost of the child and the number of robots which have moved, after the moves of the robots before i
+    private final int[] costs;
+    private final int[] movedRobots;
+    private final long[] key;
+    //Bitset of the locations taken by the robots
+    private final long[] occupiedLocations;
+
+    //Statistics
+    private long combinationsTried;
+    private long childrenCreated;
+
+    public JointMoveEnumerator(SearchField searchField, int robotsNumber, ChildFilter childFilter) {
+        this.grid = searchField.getGrid();
+        this.childFilter = childFilter;
+        this.robotsNumber = robotsNumber;
+        digits = new int[robotsNumber];
+        parentLocations = new short[robotsNumber];
+        locations = new short[robotsNumber];
+        costs = new int[robotsNumber + 1];
+        movedRobots = new int[robotsNumber + 1];
+        key = new long[PackedLocations.getWordsNumber(robotsNumber)];
+        occupiedLocations = new long[(grid.getLocationsNumber() + 63) >>> 6];
+    }
+
+    /**
+     * Gives every child of the node which passes the ChildFilter, with the node, to the childHandler.
+     *
+     * @return the number of children accepted by the childHandler
+     */
+    public int expandNode(Node node, BiPredicate<Node, Node> childHandler) {
+        int nodesAdded = 0;
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            parentLocations[robotIndex] = node.getRobotLocation(robotIndex);
+            locations[robotIndex] = parentLocations[robotIndex];
+            setOccupied(parentLocations[robotIndex], true);
+        }
+        costs[0] = node.getCost();
+        movedRobots[0] = 0;
+        int robotIndex = 0;
+        digits[0] = -1;
+        while (robotIndex >= 0) {
+            //The robot is taken back to its location in the parent before trying its next move
+            moveRobot(robotIndex, parentLocations[robotIndex]);
+            if (++digits[robotIndex] == MOVES_NUMBER) {
+                robotIndex--;
+                continue;
+            }
+            if (digits[robotIndex] == NONE) {
+                costs[robotIndex + 1] = costs[robotIndex];
+                movedRobots[robotIndex + 1] = movedRobots[robotIndex];
+            } else {
+                int newPos = grid.getNeighbour(parentLocations[robotIndex], digits[robotIndex]);
+                //A robot can't move into a wall, nor where another robot is (the robots before it have already moved)
+                if (newPos == -1 || isOccupied(newPos)) continue;
+                moveRobot(robotIndex, (short) newPos);
+                costs[robotIndex + 1] = costs[robotIndex] + grid.getCost(newPos);
+                movedRobots[robotIndex + 1] = movedRobots[robotIndex] + 1;
+            }
+            if (robotIndex < robotsNumber - 1) {
+                //Next digit, from its first move
+                robotIndex++;
+                digits[robotIndex] = -1;
+                continue;
+            }
+            combinationsTried++;
+            //If no robot has moved, this is not a child
+            if (movedRobots[robotsNumber] == 0) continue;
+            if (offerChild(node, childHandler)) nodesAdded++;
+        }
+        //Every robot is back to its location in the parent
+        for (short parentLocation : parentLocations) setOccupied(parentLocation, false);
+        return nodesAdded;
+    }
+
+    private boolean offerChild(Node node, BiPredicate<Node, Node> childHandler) {
+        int cost = costs[robotsNumber];
+        System.arraycopy(node.getPackedLocations(), 0, key, 0, key.length);
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            if (locations[robotIndex] != parentLocations[robotIndex]) PackedLocations.setLocation(key, 0, robotIndex, locations[robotIndex]);
+        }
+        int hash = PackedLocations.hash(key, 0, key.length);
+        if (childFilter != null && !childFilter.isWorthCreating(key, hash, cost)) return false;
+        childrenCreated++;
+        return childHandler.test(node, new Node(cost, key, hash, node));
+    }
+
+    private void moveRobot(int robotIndex, short location) {
+        if (locations[robotIndex] == location) return;
+        setOccupied(locations[robotIndex], false);
+        setOccupied(location, true);
+        locations[robotIndex] = location;
+    }
+
+    private boolean isOccupied(int location) {
+        return (occupiedLocations[location >>> 6] & (1L << location)) != 0;
+    }
+
+    private void setOccupied(int location, boolean isOccupied) {
+        if (isOccupied) occupiedLocations[location >>> 6] |= 1L << location;
+        else occupiedLocations[location >>> 6] &= ~(1L << location);
+    }
+
+    public long getCombinationsTried() {
+        return combinationsTried;
+    }
+
+    public long getChildrenCreated() {
+        return childrenCreated;
+    }
+
+    @Override
+    public String toString() {
+        return "JointMoveEnumerator{" +
+                "combinationsTried=" + combinationsTried +
+                ", childrenCreated=" + childrenCreated +
+                '}';
+    }
+}
@@ -4,55 +4,134 @@ import field.Direction;
 import robots.Robot;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Created by Nicolas on 11/10/2016
  *
  * This class is the structure for the nodes used in the A* search tree.
  * A node contains:
- *      - the list of robots, (so their locations)
+ *      - the locations of the robots, packed into primitive longs (see PackedLocations.java)
  *      - its cost, what had to be spent from the initial node to this one
  *      - its heuristic, an estimation of the additional cost needed to reach the goal state
  *          --> total evaluation of a node = cost + heuristic
- *      - its predecessor hashcode (smaller in memory than the predecessor Node itself)
+ *      - its index in the VisitedTable of the search, where its predecessor is stored (see VisitedTable.java)
+ *
+ * The packed locations are the exact key of the node: two nodes are equal if and only if their longs are equal.
+ * The hashcode is mixed from these longs only once, and kept until a robot of the node is moved.
+ *
+ * With the operator decomposition (see SearchField.ExpansionMode), robots are given their move one after the other,
+ * so a node also stores the index of the next robot to move. It is packed after the locations, as if it was the location
+ * of one more robot, so that it is part of the key too.
  */
 
 public class Node {
 
     private int cost;
     private float heuristic;
-    private ArrayList<Robot> robotsList;
-    private final Integer predecessorHashCode;
+    private final short robotsNumber;
+    private final boolean isDecomposed;
+    private final long[] packedLocations;
+    private int hashCode;
+    private boolean isHashCodeComputed;
+    private int index = -1;
 
     public Node(ArrayList<Robot> robotsList) {
         this(0, robotsList);
     }
 
     public Node(int cost, ArrayList<Robot> robotsList) {
-        this(cost, robotsList, null);
+        this(cost, robotsList, 0);
     }
 
-    public Node(int cost, ArrayList<Robot> robotsList, Integer predecessorHashCode) {
-        this(cost, robotsList, predecessorHashCode, 0);
+    public Node(int cost, ArrayList<Robot> robotsList, float newPosHeuristic) {
+        this(cost, robotsList, newPosHeuristic, false);
     }
 
-    public Node(int cost, ArrayList<Robot> robotsList, Integer predHashCode, float newPosHeuristic) {
-        this.cost = cost;
-        copyList(robotsList); //Here we need to store a copy to avoid retrieving a reference
-        this.predecessorHashCode = predHashCode;
+    //isDecomposed is true when the node has to store the index of the next robot to move (operator decomposition)
+    public Node(ArrayList<Robot> robotsList, boolean isDecomposed) {
+        this(0, robotsList, 0, isDecomposed);
+    }
+
+    private Node(int cost, ArrayList<Robot> robotsList, float newPosHeuristic, boolean isDecomposed) {
+        this(cost, (short) robotsList.size(), isDecomposed);
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            PackedLocations.setLocation(packedLocations, 0, robotIndex, robotsList.get(robotIndex).getCurrentLocation());
+        }
         this.heuristic = newPosHeuristic;
     }
 
+    public Node(short[] robotsLocations, boolean isDecomposed) {
+        this(0, (short) robotsLocations.length, isDecomposed);
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            PackedLocations.setLocation(packedLocations, 0, robotIndex, robotsLocations[robotIndex]);
+        }
+    }
+
+    private Node(int cost, short robotsNumber, boolean isDecomposed) {
+        this.cost = cost;
+        this.robotsNumber = robotsNumber;
+        this.isDecomposed = isDecomposed;
+        this.packedLocations = new long[PackedLocations.getWordsNumber(isDecomposed ? robotsNumber + 1 : robotsNumber)];
+    }
+
+    //Creates a child node with the same robots locations as its model, without going through Robot objects
+    public Node(int cost, Node model) {
+        this.cost = cost;
+        this.robotsNumber = model.robotsNumber;
+        this.isDecomposed = model.isDecomposed;
+        this.packedLocations = model.packedLocations.clone(); //Here we need to store a copy to avoid retrieving a reference
+        this.hashCode = model.hashCode;
+        this.isHashCodeComputed = model.isHashCodeComputed;
+    }
+
+    //Creates a child node of the model from its packed locations and their hashcode, already computed (see JointMoveEnumerator.java)
+    Node(int cost, long[] packedLocations, int hashCode, Node model) {
+        this.cost = cost;
+        this.robotsNumber = model.robotsNumber;
+        this.isDecomposed = model.isDecomposed;
+        this.packedLocations = packedLocations.clone();
+        this.hashCode = hashCode;
+        this.isHashCodeComputed = true;
+    }
+
     public void moveRobot(short robotIndex, Direction direction) {
-        robotsList.get(robotIndex).move(direction);
+        setRobotLocation(robotIndex, (short) (getRobotLocation(robotIndex) + direction.getDirectionValue()));
     }
 
-    private void copyList(ArrayList<Robot> robotsList) {
-        this.robotsList = new ArrayList<>();
-        for (Robot robot : robotsList) {
-            Robot copyRobot = new Robot(robot.getCurrentLocation());
-            this.robotsList.add(copyRobot);
-        }
+    public void setRobotLocation(short robotIndex, short location) {
+        PackedLocations.setLocation(packedLocations, 0, robotIndex, location);
+        //The key of the node has changed, so its hashcode has to be mixed again
+        isHashCodeComputed = false;
+    }
+
+    public short getRobotLocation(short robotIndex) {
+        return PackedLocations.getLocation(packedLocations, 0, robotIndex);
+    }
+
+    public short getNextRobotToMove() {
+        return isDecomposed ? getRobotLocation(robotsNumber) : 0;
+    }
+
+    public void setNextRobotToMove(short robotIndex) {
+        setRobotLocation(robotsNumber, robotIndex);
+    }
+
+    //A node is a standard state when every robot has been given its move (always true without operator decomposition)
+    public boolean isStandardState() {
+        return getNextRobotToMove() == 0;
+    }
+
+    public boolean isDecomposed() {
+        return isDecomposed;
+    }
+
+    public boolean isAnyRobotOnLocation(short location) {
+        return PackedLocations.getRobotOnLocation(packedLocations, 0, robotsNumber, location) != -1;
+    }
+
+    public short getRobotsNumber() {
+        return robotsNumber;
     }
 
     @Override
@@ -61,18 +140,18 @@ public class Node {
         if (this == o) return true;
         //If both objects classes are different, both objects are different.
         if (o == null || getClass() != o.getClass()) return false;
-        //If both objects are Nodes and their robots list are equal, both Nodes are equal.
+        //If both objects are Nodes and their robots locations are equal, both Nodes are equal.
         Node node = (Node) o;
-        return this.robotsList.equals(node.robotsList);
+        return robotsNumber == node.robotsNumber && Arrays.equals(packedLocations, node.packedLocations);
     }
 
     @Override
     public int hashCode() {
-        String hash = "";
-        for (Robot robot : robotsList) {
-            hash += robot.hashCode() + ",";
+        if (!isHashCodeComputed) {
+            hashCode = PackedLocations.hash(packedLocations, 0, packedLocations.length);
+            isHashCodeComputed = true;
         }
-        return hash.hashCode();
+        return hashCode;
     }
 
     public int getCost() {
@@ -83,16 +162,19 @@ public class Node {
         this.cost = cost;
     }
 
+    public float getHeuristic() {
+        return heuristic;
+    }
+
     public void setHeuristic(float heuristic) {
         this.heuristic = heuristic;
     }
 
     public ArrayList<Short> getListOfRobotsLocations() {
-        //Here we return a copy of the list, because the default behaviour is to return a reference,
-        //and when we modify the returned list we do not want the list of this node to be modified too.
+        //The locations are decoded into a new list, so modifying the returned list has no effect on this node.
         ArrayList<Short> robotsLocations = new ArrayList<>();
-        for (short robotIndex = 0; robotIndex < robotsList.size(); robotIndex++) {
-            robotsLocations.add(robotsList.get(robotIndex).getCurrentLocation());
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            robotsLocations.add(getRobotLocation(robotIndex));
         }
         return robotsLocations;
     }
@@ -101,12 +183,31 @@ public class Node {
         return heuristic + cost;
     }
 
+    //Costs of moves are integers, so the cost of any path is an integer: the heuristic can be rounded up without
+    //overestimating it (the small margin avoids rounding up a float sum which should have been an exact integer)
+    public int getIntegerEvaluation() {
+        return cost + (int) Math.ceil(heuristic - 0.001f);
+    }
+
+    //Robot objects are not stored anymore in nodes: this list is built from the packed locations at each call
     public ArrayList<Robot> getRobotsList() {
+        ArrayList<Robot> robotsList = new ArrayList<>();
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            robotsList.add(new Robot(getRobotLocation(robotIndex)));
+        }
         return robotsList;
     }
 
-    public Integer getPredecessorHashCode() {
-        return predecessorHashCode;
+    public long[] getPackedLocations() {
+        return packedLocations;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
     }
 
     @Override
@@ -114,7 +215,7 @@ public class Node {
         return "Node{" +
                 "cost=" + cost +
                 ", \ntotal cost=" + getTotalEvaluation() +
-                ", \nrobotsList=" + robotsList +
+                ", \nrobotsLocations=" + getListOfRobotsLocations() +
                 '}';
     }
 }
@@ -0,0 +1,41 @@
+package search;
+
+/**
+ * This interface is the storage of the entries of a VisitedTable, i.e. of every configuration visited by a search (see VisitedTable.java).
+ *
+ * An entry is added once and never moved: it is identified by its index (0, 1, 2, ... in order of insertion), and stores:
+ *      - the packed locations of the robots (the key, see PackedLocations.java)
+ *      - the cost of the best path found yet to reach this configuration
+ *      - the index of the entry it has been reached from (its parent), or -1 for the initial configuration
+ *      - the hashcode of the key, so that the table can be grown without reading the keys
+ *
+ * Two implementations can be used by SearchField (see SearchField.setNodeStorageType()):
+ *      - HeapNodeStorage, chunks of primitive arrays on the heap
+ *      - OffHeapNodeStorage, chunks of direct buffers, outside of the heap, with a cap on the memory used
+ */
+
+public interface NodeStorage {
+
+    //Adds a new entry at the end of the storage and returns its index
+    int add(long[] key, int offset, int hash, int cost, int parentIndex);
+
+    //True if the key of the entry is equal to the key given
+    boolean isKeyEqual(int index, long[] key, int offset);
+
+    int getHash(int index);
+
+    int getCost(int index);
+
+    void setCost(int index, int cost);
+
+    int getParent(int index);
+
+    void setParent(int index, int parentIndex);
+
+    short getRobotLocation(int index, short robotIndex);
+
+    int size();
+
+    //The memory allocated for the entries, in bytes
+    long getBytesUsed();
+}
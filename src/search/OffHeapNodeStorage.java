@@ -0,0 +1,141 @@
+package search;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * This class stores the entries of a VisitedTable outside of the heap, in direct buffers (see NodeStorage.java).
+ *
+ * A search of tens of millions of configurations fills the heap with big arrays, which the garbage collector copies each time
+ * it compacts the heap, and which make its pauses longer and longer. The direct buffers are allocated out of the heap:
+ * the collector only sees the small ByteBuffer objects, whatever the number of entries.
+ *
+ * The entries are stored by chunks of CHUNK_SIZE entries, each chunk being one direct buffer. An entry is a fixed-width record:
+ *      key (keyLength longs) | cost (int) | parent (int) | hash (int)
+ * Only the slots of the VisitedTable (one int per slot) and the nodes waiting in the open list stay on the heap.
+ *
+ * The memory of the direct buffers is not limited by the heap size (-Xmx) but by -XX:MaxDirectMemorySize (by default, the heap size),
+ * so the storage has its own cap (see SearchField.setOffHeapMemoryCap()): once it is reached, no chunk can be added,
+ * and the search fails with an IllegalStateException. The cap is a setting of the search, not the JVM running out of memory,
+ * so it is not reported as an OutOfMemoryError: the JVM is still in a sane state and the caller can go on.
+ * The memory is given back when the buffers are collected, after the end of the search.
+ */
+
+public class OffHeapNodeStorage implements NodeStorage {
+
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int keyLength;
+    private final int entryBytes;
+    private final int costOffset;
+    private final int parentOffset;
+    private final int hashOffset;
+    private final long memoryCap;
+    private ByteBuffer[] chunks;
+    private int chunksNumber;
+    private int size;
+
+    /**
+     * @param keyLength is the number of longs of the key of an entry (see PackedLocations.getWordsNumber())
+     * @param memoryCap is the number of bytes the buffers can take at most
+     */
+    public OffHeapNodeStorage(int keyLength, long memoryCap) {
+        this.keyLength = keyLength;
+        this.memoryCap = memoryCap;
+        costOffset = keyLength * Long.BYTES;
+        parentOffset = costOffset + Integer.BYTES;
+        hashOffset = parentOffset + Integer.BYTES;
+        entryBytes = hashOffset + Integer.BYTES;
+        chunks = new ByteBuffer[1];
+    }
+
+    @Override
+    public int add(long[] key, int offset, int hash, int cost, int parentIndex) {
+        int index = size;
+        int chunkIndex = index >>> CHUNK_BITS;
+        if (chunkIndex == chunksNumber) addChunk();
+        ByteBuffer chunk = chunks[chunkIndex];
+        int position = getPosition(index);
+        for (int word = 0; word < keyLength; word++) chunk.putLong(position + word * Long.BYTES, key[offset + word]);
+        chunk.putInt(position + costOffset, cost);
+        chunk.putInt(position + parentOffset, parentIndex);
+        chunk.putInt(position + hashOffset, hash);
+        size++;
+        return index;
+    }
+
+    private void addChunk() {
+        long chunkBytes = (long) CHUNK_SIZE * entryBytes;
+        if (getBytesUsed() + chunkBytes > memoryCap) {
+            throw new IllegalStateException("Off-heap memory cap of " + memoryCap + " bytes reached (" + size + " configurations visited)");
+        }
+        if (chunksNumber == chunks.length) chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        //The buffers are only read by this storage, so the order of the bytes is the fastest one for the processor
+        chunks[chunksNumber++] = ByteBuffer.allocateDirect((int) chunkBytes).order(ByteOrder.nativeOrder());
+    }
+
+    private int getPosition(int index) {
+        return (index & CHUNK_MASK) * entryBytes;
+    }
+
+    @Override
+    public boolean isKeyEqual(int index, long[] key, int offset) {
+        ByteBuffer chunk = chunks[index >>> CHUNK_BITS];
+        int position = getPosition(index);
+        for (int word = 0; word < keyLength; word++) {
+            if (chunk.getLong(position + word * Long.BYTES) != key[offset + word]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int getHash(int index) {
+        return chunks[index >>> CHUNK_BITS].getInt(getPosition(index) + hashOffset);
+    }
+
+    @Override
+    public int getCost(int index) {
+        return chunks[index >>> CHUNK_BITS].getInt(getPosition(index) + costOffset);
+    }
+
+    @Override
+    public void setCost(int index, int cost) {
+        chunks[index >>> CHUNK_BITS].putInt(getPosition(index) + costOffset, cost);
+    }
+
+    @Override
+    public int getParent(int index) {
+        return chunks[index >>> CHUNK_BITS].getInt(getPosition(index) + parentOffset);
+    }
+
+    @Override
+    public void setParent(int index, int parentIndex) {
+        chunks[index >>> CHUNK_BITS].putInt(getPosition(index) + parentOffset, parentIndex);
+    }
+
+    //Same as PackedLocations.getLocation(), on the word of the robot read from the buffer
+    @Override
+    public short getRobotLocation(int index, short robotIndex) {
+        int wordPosition = getPosition(index) + (robotIndex / PackedLocations.LOCATIONS_PER_WORD) * Long.BYTES;
+        long word = chunks[index >>> CHUNK_BITS].getLong(wordPosition);
+        return (short) (word >>> ((robotIndex % PackedLocations.LOCATIONS_PER_WORD) * Short.SIZE));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getBytesUsed() {
+        return (long) chunksNumber * CHUNK_SIZE * entryBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "off-heap storage of " + getBytesUsed() + " bytes (cap: " + memoryCap + ")";
+    }
+}
@@ -0,0 +1,25 @@
+package search;
+
+/**
+ * This interface is the open list of the A* search, i.e. the structure which gives back the most optimistic node found yet.
+ *
+ * Two implementations can be used by SearchField (see SearchField.setOpenListType()):
+ *      - RobotPriorityQueue, a binary heap ordered by the total evaluation of the nodes (cost + heuristic)
+ *      - RobotBucketQueue, an array of buckets indexed by the integer total evaluation of the nodes
+ */
+
+public interface OpenList {
+
+    boolean add(Node node);
+
+    Node poll();
+
+    //Same as poll(), but the node stays in the open list
+    Node peek();
+
+    boolean isEmpty();
+
+    int size();
+
+    void clear();
+}
@@ -0,0 +1,79 @@
+package search;
+
+/**
+ * This class gathers the tools used to encode a configuration of robots (i.e. the location of every robot) into primitive longs.
+ *
+ * A location is a short (see matrix encoding info in Direction.java), so it only needs 16 bits.
+ * Consequently four locations can be packed into a single long:
+ *      word 0 = location of robot 0 | location of robot 1 | location of robot 2 | location of robot 3
+ *      word 1 = location of robot 4 | ...
+ *
+ * With our levels of 2, 3 or 4 robots, a whole configuration holds into one long, which is far smaller in memory than
+ * a list of Robot objects, and much faster to compare and to hash than a String built from every location.
+ *
+ * The methods take an offset so that they can be used on a single configuration (offset = 0) as well as on a big array
+ * storing many configurations one after the other.
+ */
+
+public final class PackedLocations {
+
+    //Number of locations which can be stored into one long
+    public static final int LOCATIONS_PER_WORD = 4;
+    private static final int BITS_PER_LOCATION = 16;
+    private static final long LOCATION_MASK = 0xFFFFL;
+
+    private PackedLocations() {
+    }
+
+    //Number of longs needed to store the locations of robotsNumber robots
+    public static int getWordsNumber(int robotsNumber) {
+        return (robotsNumber + LOCATIONS_PER_WORD - 1) / LOCATIONS_PER_WORD;
+    }
+
+    public static short getLocation(long[] words, int offset, int robotIndex) {
+        int shift = (robotIndex % LOCATIONS_PER_WORD) * BITS_PER_LOCATION;
+        return (short) (words[offset + robotIndex / LOCATIONS_PER_WORD] >>> shift);
+    }
+
+    public static void setLocation(long[] words, int offset, int robotIndex, short location) {
+        int wordIndex = offset + robotIndex / LOCATIONS_PER_WORD;
+        int shift = (robotIndex % LOCATIONS_PER_WORD) * BITS_PER_LOCATION;
+        //Clear the 16 bits of the robot, then write its new location
+        words[wordIndex] = (words[wordIndex] & ~(LOCATION_MASK << shift)) | ((location & LOCATION_MASK) << shift);
+    }
+
+    //Returns the index of the robot standing on this location, or -1 if there is none
+    public static short getRobotOnLocation(long[] words, int offset, int robotsNumber, short location) {
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            if (getLocation(words, offset, robotIndex) == location) return robotIndex;
+        }
+        return -1;
+    }
+
+    public static boolean equals(long[] words1, int offset1, long[] words2, int offset2, int length) {
+        for (int i = 0; i < length; i++) {
+            if (words1[offset1 + i] != words2[offset2 + i]) return false;
+        }
+        return true;
+    }
+
+    //Every word is mixed with a 64 bits finalizer before being combined, so that configurations which only differ
+    //by a few bits (robots on neighbour locations) still spread over the whole range of int values
+    public static int hash(long[] words, int offset, int length) {
+        long hash = 0x9E3779B97F4A7C15L * (length + 1);
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ mix(words[offset + i])) * 0x9E3779B97F4A7C15L;
+        }
+        hash = mix(hash);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,292 @@
+package search;
+
+import search.heuristics.Heuristic;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiPredicate;
+
+/**
+ * This class is the A* search of SearchField shared between several threads (workers), see SearchField.setWorkersNumber().
+ *
+ * Every configuration of the robots is owned by one worker, chosen with its hashcode. Each worker has its own open list
+ * and its own visited table, which only contain the configurations it owns, so the workers never share a structure
+ * which would need a lock:
+ *      - A worker takes the best node of its open list and creates its children (SearchField.expandNode()).
+ *      - A child owned by this worker is recorded in its visited table and added to its open list, like in the usual A*.
+ *      - A child owned by another worker is sent to it, through its inbox: a lock-free queue (ConcurrentLinkedQueue).
+ *        Before expanding a node, a worker always empties its inbox into its open list.
+ * As the states are spread by hashing, every worker gets about the same number of states to expand.
+ *
+ * A worker which dequeues a solution can't stop the search: another worker may still have a node with a lower evaluation,
+ * which could lead to a cheaper solution. So the cheapest solution found is kept, and a worker whose open list
+ * only contains nodes whose evaluation is not lower than its cost has nothing to do anymore.
+ * The search is over when no worker has anything to do and no node is on its way to a worker. Both are counted
+ * in a single counter (activeCounter), which is increased before sending a node and decreased once it has been received,
+ * so it can't reach 0 while some work is left: the solution kept is then optimal.
+ *
+ * The parent of a node may be owned by another worker, so the parents are stored as references:
+ * (index in the visited table of the owner) * workersNumber + (index of the owner).
+ * While a node is on its way to its owner, its index (Node.getIndex()) is the reference of its parent.
+ * A reference is an int: once a worker has visited more than maxIndex configurations, the references of its nodes can't be written,
+ * so the search stops with an IllegalStateException instead of building wrong parents.
+ */
+
+public class ParallelAStar {
+
+    private final SearchField searchField;
+    private final Heuristic heuristic;
+    private final int workersNumber;
+    private final Worker[] workers;
+    //Highest index of a visited table whose references fit in an int
+    private final int maxIndex;
+    private final AtomicLong activeCounter = new AtomicLong();
+    private volatile boolean isOver;
+    //The search has been cancelled, or its budget is spent (see SearchProgress.java): the best solution found may not be optimal
+    private volatile boolean isStopped;
+    //A worker has visited too many configurations for the references (see maxIndex)
+    private volatile boolean isOverflowed;
+    private SearchProgress progress;
+
+    //Cheapest solution found yet
+    private volatile int bestCost = Integer.MAX_VALUE;
+    private int bestReference = -1;
+
+    public ParallelAStar(SearchField searchField, Heuristic heuristic, int workersNumber) {
+        this.searchField = searchField;
+        this.heuristic = heuristic;
+        this.workersNumber = workersNumber;
+        workers = new Worker[workersNumber];
+        maxIndex = (Integer.MAX_VALUE - (workersNumber - 1)) / workersNumber;
+    }
+
+    /**
+     * Same as SearchField.searchGroup()
+     *
+     * @param group contains the indexes of the robots of the group, in increasing order
+     * @return the paths of the robots of the group (paths[i][t] is the location of the robot group[i] after t moves),
+     * or null if no solution was found
+     */
+    public short[][] searchGroup(short[] group) {
+        boolean isDecomposed = (searchField.getExpansionMode() == SearchField.ExpansionMode.OPERATOR_DECOMPOSITION);
+        long startTime = System.currentTimeMillis();
+        progress = searchField.getProgress();
+        Node node = new Node(searchField.getStartLocations(group), isDecomposed);
+        for (int workerIndex = 0; workerIndex < workersNumber; workerIndex++) {
+            workers[workerIndex] = new Worker(workerIndex, group, isDecomposed, node.getPackedLocations().length);
+        }
+        //The initial node is sent to its owner like any other node, with no parent
+        send(node, -1);
+        Thread[] threads = new Thread[workersNumber];
+        for (int workerIndex = 0; workerIndex < workersNumber; workerIndex++) {
+            threads[workerIndex] = new Thread(workers[workerIndex], "A* worker " + workerIndex);
+            threads[workerIndex].start();
+        }
+        try {
+            for (Thread thread : threads) thread.join();
+        } catch (InterruptedException e) {
+            //Stop the workers before leaving
+            isOver = true;
+            e.printStackTrace();
+            return null;
+        }
+        if (isOverflowed) throw new IllegalStateException("too many configurations visited by a worker for the references of the parallel A*");
+        boolean isSolutionFound = (bestReference != -1 && !isStopped);
+        //The tables of the workers are all in memory at the same time
+        long storageBytes = 0;
+        for (Worker worker : workers) storageBytes += worker.visitedTable.getBytesUsed();
+        progress.reportStorageBytes(storageBytes);
+        if (group.length < searchField.getRobotData().getRobotsNumber()) System.out.println("Group of robots " + Arrays.toString(group) + ":");
+        displayDiagnosis(isSolutionFound, startTime);
+        return isSolutionFound ? extractPaths((short) group.length, isDecomposed) : null;
+    }
+
+    private void send(Node node, int parentReference) {
+        //Counted before it is visible to its owner, so that the counter is never 0 while a node is on its way
+        activeCounter.incrementAndGet();
+        node.setIndex(parentReference);
+        workers[getOwner(node)].inbox.add(node);
+    }
+
+    private int getOwner(Node node) {
+        return getOwner(node.hashCode());
+    }
+
+    //Uses the highest bits of the mixed hashcode: the lowest bits are used by the visited tables to choose the slots
+    private int getOwner(int hash) {
+        return (int) (((hash * 0x9E3779B9L) & 0xFFFFFFFFL) * workersNumber >>> 32);
+    }
+
+    private synchronized void offerSolution(int cost, int reference) {
+        if (cost < bestCost) {
+            bestCost = cost;
+            bestReference = reference;
+        }
+    }
+
+    //Same as VisitedTable.extractPaths(), but the entries can be in the visited tables of all workers
+    private short[][] extractPaths(short groupSize, boolean isDecomposed) {
+        //First count the steps, to know the length of the paths
+        int stepsNumber = 0;
+        for (int reference = bestReference; reference != -1; reference = getParent(reference)) {
+            if (isStandardState(reference, groupSize, isDecomposed)) stepsNumber++;
+        }
+        short[][] paths = new short[groupSize][stepsNumber];
+        for (int reference = bestReference; reference != -1; reference = getParent(reference)) {
+            if (!isStandardState(reference, groupSize, isDecomposed)) continue;
+            stepsNumber--;
+            VisitedTable visitedTable = workers[reference % workersNumber].visitedTable;
+            int index = reference / workersNumber;
+            for (short robotIndex = 0; robotIndex < groupSize; robotIndex++)
+                paths[robotIndex][stepsNumber] = visitedTable.getRobotLocation(index, robotIndex);
+        }
+        return paths;
+    }
+
+    private int getParent(int reference) {
+        return workers[reference % workersNumber].visitedTable.getParent(reference / workersNumber);
+    }
+
+    //With the operator decomposition, intermediate states are skipped (the next robot to move is stored after the locations)
+    private boolean isStandardState(int reference, short groupSize, boolean isDecomposed) {
+        return !isDecomposed || workers[reference % workersNumber].visitedTable.getRobotLocation(reference / workersNumber, groupSize) == 0;
+    }
+
+    private void displayDiagnosis(boolean isSolutionFound, long startTime) {
+        long nodesDequeued = 0;
+        long nodesAdded = 0;
+        for (Worker worker : workers) {
+            nodesDequeued += worker.nodesDequeued;
+            nodesAdded += worker.nodesAdded;
+        }
+        if (isSolutionFound)
+            System.out.println("Solution found in " + (System.currentTimeMillis() - startTime) / 1000f + "s with " + workersNumber + " workers!");
+        else
+            System.out.println("Solution not found after " + (System.currentTimeMillis() - startTime) / 1000f + "s with " + workersNumber + " workers:");
+        System.out.println("Nodes dequeued: " + nodesDequeued + "\nNodes added to priority queues: " + nodesAdded);
+        //The load balance between the workers
+        for (Worker worker : workers) {
+            System.out.println("\tWorker " + worker.workerIndex + ": " + worker.nodesDequeued + " nodes dequeued ("
+                    + (nodesDequeued == 0 ? 0 : 100 * worker.nodesDequeued / nodesDequeued) + "%), "
+                    + worker.nodesReceived + " nodes received, " + worker.visitedTable.size() + " configurations visited");
+        }
+        if (isSolutionFound) System.out.println("Total cost of solution: " + bestCost);
+    }
+
+    private class Worker implements Runnable {
+
+        private final int workerIndex;
+        private final short[] group;
+        private final JointMoveEnumerator jointMoves;
+        private final ConcurrentLinkedQueue<Node> inbox = new ConcurrentLinkedQueue<>();
+        private final OpenList openList;
+        private final VisitedTable visitedTable;
+        private final BiPredicate<Node, Node> childHandler;
+        //A worker is active while it has nodes to expand (it is then counted in activeCounter)
+        private boolean isActive;
+        private long nodesDequeued;
+        private long nodesAdded;
+        private long nodesReceived;
+
+        private Worker(int workerIndex, short[] group, boolean isDecomposed, int keyLength) {
+            this.workerIndex = workerIndex;
+            this.group = group;
+            openList = searchField.createOpenList();
+            visitedTable = searchField.createVisitedTable(keyLength);
+            //The children owned by this worker and already visited with a lower or equal cost are not even created
+            jointMoves = isDecomposed ? null : new JointMoveEnumerator(searchField, group.length, (long[] key, int hash, int cost) -> {
+                if (getOwner(hash) != workerIndex) return true;
+                int index = visitedTable.find(key, 0, hash);
+                return index == -1 || cost < visitedTable.getCost(index);
+            });
+            //The children owned by this worker go directly into its open list, the other ones are sent to their owner
+            childHandler = (Node parent, Node nodeChild) -> {
+                int parentReference = parent.getIndex() * workersNumber + workerIndex;
+                if (getOwner(nodeChild) == workerIndex) return addNode(nodeChild, parentReference);
+                send(nodeChild, parentReference);
+                return false;
+            };
+        }
+
+        @Override
+        public void run() {
+            long bytesAllocatedBefore = SearchProgress.getThreadAllocatedBytes();
+            while (!isOver) {
+                receiveNodes();
+                Node node = openList.poll();
+                //Nodes which can't lead to a cheaper solution than the best one are useless, and so are the ones after them
+                if (node != null && node.getTotalEvaluation() >= bestCost) {
+                    openList.clear();
+                    node = null;
+                }
+                if (node == null) {
+                    waitForNodes();
+                    continue;
+                }
+                //If a cheaper path to this configuration has been found since this node was queued, it has already been queued again: skip it
+                if (node.getCost() > visitedTable.getCost(node.getIndex())) continue;
+                //The references of this node and of its children (index * workersNumber + workerIndex) would not fit in an int
+                if (node.getIndex() > maxIndex) {
+                    if (!isOverflowed) System.out.println("Error in ParallelAStar.Worker.run(): too many configurations for the references -> index="
+                            + node.getIndex() + ", workersNumber=" + workersNumber);
+                    isOverflowed = true;
+                    isStopped = true;
+                    isOver = true;
+                    continue;
+                }
+                nodesDequeued++;
+                //Every worker reports the nodes it expands, and stops all of them if the search has been cancelled
+                if (nodesDequeued % SearchProgress.REPORT_PERIOD == 0 && progress.report(SearchProgress.REPORT_PERIOD, -1, -1)) {
+                    isStopped = true;
+                    isOver = true;
+                    continue;
+                }
+                if (node.isStandardState() && searchField.areRobotsOnGoals(node, group)) {
+                    offerSolution(node.getCost(), node.getIndex() * workersNumber + workerIndex);
+                    continue;
+                }
+                searchField.expandNode(node, jointMoves, childHandler);
+            }
+            //The nodes expanded since the last report
+            progress.report(nodesDequeued % SearchProgress.REPORT_PERIOD, -1, -1);
+            progress.reportBytesAllocated(SearchProgress.getThreadAllocatedBytes() - bytesAllocatedBefore);
+        }
+
+        private void receiveNodes() {
+            Node node;
+            while ((node = inbox.poll()) != null) {
+                //Become active before the node stops being counted, so that the counter can't reach 0 in between
+                if (!isActive) {
+                    isActive = true;
+                    activeCounter.incrementAndGet();
+                }
+                nodesReceived++;
+                addNode(node, node.getIndex());
+                activeCounter.decrementAndGet();
+            }
+        }
+
+        //Records a node owned by this worker in its visited table, and adds it to its open list if it is new or cheaper than before
+        private boolean addNode(Node node, int parentReference) {
+            if (!SearchField.markVisited(visitedTable, node, parentReference)) return false;
+            node.setHeuristic(heuristic.getTotalHeuristic(node, group));
+            if (node.getTotalEvaluation() >= bestCost || !openList.add(node)) return false;
+            nodesAdded++;
+            return true;
+        }
+
+        //Nothing to expand: the worker is not active anymore, and the search is over if no other worker is
+        private void waitForNodes() {
+            if (isActive) {
+                isActive = false;
+                if (activeCounter.decrementAndGet() == 0) {
+                    isOver = true;
+                    return;
+                }
+            }
+            LockSupport.parkNanos(10000);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package search;
+
+import field.CompiledGrid;
+import search.heuristics.Heuristic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.BiPredicate;
+
+/**
+ * This class creates the children of the nodes for the PARTIAL_EXPANSION mode of the A* (Enhanced Partial Expansion A*,
+ * see SearchField.setExpansionMode()).
+ *
+ * With the JOINT_MOVES mode, every child of a node is created, its heuristic is computed and it is added to the priority queue,
+ * but most children have a higher evaluation than their parent and are never dequeued before the solution is found.
+ * Here, a node only creates the children whose evaluation is the evaluation it was dequeued with:
+ *      - A move of a robot changes the evaluation by (cost of the move) + (heuristic of the new location) - (heuristic of the old location).
+ *        For each robot and each location, the moves are sorted by this change (the operator table of the location), which
+ *        only depends on the heuristic fields, so it is computed once for the whole search.
+ *      - The change of evaluation of a child is the sum of the changes of the moves of the robots. The combinations of moves
+ *        are explored robot by robot, and a combination is left as soon as its sum can't be the one wanted anymore
+ *        (with the lowest and highest changes of the robots left), so the other children are never created.
+ *      - The parent goes back into the priority queue with the next change of evaluation of its children, i.e. the evaluation
+ *        of its next children. If it has no child left, it is not added again.
+ * The nodes are still dequeued by increasing evaluation, so the solution is still optimal, but far fewer nodes are created
+ * and stored in the priority queue: the children which are never needed are never created.
+ *
+ * A node which is dequeued for the first time (its evaluation is cost + heuristic) creates every child whose change of evaluation
+ * is not positive, so the heuristic does not have to be consistent.
+ */
+
+public class PartialExpansion {
+
+    //The heuristics are floats: changes of evaluation closer than this are considered equal
+    private static final float EPSILON = 0.001f;
+
+    private final CompiledGrid grid;
+    private final Heuristic heuristic;
+    private final short[] group;
+    //Operator tables, computed when a robot first reaches a location: operators[robot][location] are the locations the robot
+    //can move to (its own location for the NONE move), sorted by their change of evaluation deltas[robot][location]
+    private final short[][][] operators;
+    private final float[][][] deltas;
+
+    //Data of the current expansion
+    private final short[] locations;
+    private final float[] lowestDeltasLeft;
+    private final float[] highestDeltasLeft;
+    private Node parent;
+    private BiPredicate<Node, Node> childHandler;
+    private float lowestDelta;
+    private float highestDelta;
+    private float nextDelta;
+    private float parentHeuristic;
+    private int nodesAdded;
+
+    //Statistics
+    private long childrenCreated;
+    private long nodesRequeued;
+
+    public PartialExpansion(SearchField searchField, Heuristic heuristic, short[] group) {
+        this.grid = searchField.getGrid();
+        this.heuristic = heuristic;
+        this.group = group;
+        int locationsNumber = grid.getLocationsNumber();
+        operators = new short[group.length][locationsNumber][];
+        deltas = new float[group.length][locationsNumber][];
+        locations = new short[group.length];
+        lowestDeltasLeft = new float[group.length + 1];
+        highestDeltasLeft = new float[group.length + 1];
+    }
+
+    /**
+     * Creates the children of the node whose evaluation is the one the node was dequeued with, and gives each of them,
+     * with the node, to the childHandler (like SearchField.expandNode()).
+     * Then the node is given the evaluation of its next children (see requeue()).
+     *
+     * @return the number of children accepted by the childHandler
+     */
+    public int expandNode(Node node, BiPredicate<Node, Node> childHandler) {
+        parent = node;
+        this.childHandler = childHandler;
+        parentHeuristic = heuristic.getTotalHeuristic(node, group);
+        //The change of evaluation wanted is the difference between the evaluation the node was dequeued with and its real one
+        float delta = node.getHeuristic() - parentHeuristic;
+        lowestDelta = (delta <= EPSILON) ? Float.NEGATIVE_INFINITY : delta - EPSILON;
+        highestDelta = delta + EPSILON;
+        nextDelta = Float.POSITIVE_INFINITY;
+        nodesAdded = 0;
+        //Lowest and highest changes of evaluation of the robots after each robot (the last entry is 0, when no robot is left)
+        lowestDeltasLeft[group.length] = 0;
+        highestDeltasLeft[group.length] = 0;
+        for (int robotIndex = group.length - 1; robotIndex >= 0; robotIndex--) {
+            locations[robotIndex] = node.getRobotLocation((short) robotIndex);
+            float[] robotDeltas = getDeltas(robotIndex, locations[robotIndex]);
+            lowestDeltasLeft[robotIndex] = lowestDeltasLeft[robotIndex + 1] + robotDeltas[0];
+            highestDeltasLeft[robotIndex] = highestDeltasLeft[robotIndex + 1] + robotDeltas[robotDeltas.length - 1];
+        }
+        createChildren(0, 0, node.getCost(), false);
+        return nodesAdded;
+    }
+
+    /**
+     * Gives the node the evaluation of the children it has not created yet, after expandNode().
+     *
+     * @return true if the node has to be added to the priority queue again, false if all its children have been created
+     */
+    public boolean requeue(Node node) {
+        if (nextDelta == Float.POSITIVE_INFINITY) return false;
+        node.setHeuristic(parentHeuristic + nextDelta);
+        nodesRequeued++;
+        return true;
+    }
+
+    //The robots move one after the other, by order of index: the robots before robotIndex have been given their move in locations
+    private void createChildren(int robotIndex, float deltaSum, int cost, boolean somethingChanged) {
+        if (robotIndex == group.length) {
+            //If no robot has moved, this is not a child
+            if (!somethingChanged) return;
+            Node nodeChild = new Node(cost, parent);
+            for (short index = 0; index < group.length; index++) {
+                if (locations[index] != parent.getRobotLocation(index)) nodeChild.setRobotLocation(index, locations[index]);
+            }
+            childrenCreated++;
+            if (childHandler.test(parent, nodeChild)) nodesAdded++;
+            return;
+        }
+        short location = locations[robotIndex];
+        short[] robotOperators = getOperators(robotIndex, location);
+        float[] robotDeltas = getDeltas(robotIndex, location);
+        for (int operatorIndex = 0; operatorIndex < robotOperators.length; operatorIndex++) {
+            float sum = deltaSum + robotDeltas[operatorIndex];
+            //The moves are sorted: the next ones give even higher changes, they are left for the next expansions
+            if (sum + lowestDeltasLeft[robotIndex + 1] > highestDelta) {
+                nextDelta = Math.min(nextDelta, sum + lowestDeltasLeft[robotIndex + 1]);
+                break;
+            }
+            //These children have been created by a previous expansion of the node
+            if (sum + highestDeltasLeft[robotIndex + 1] < lowestDelta) continue;
+            short newPos = robotOperators[operatorIndex];
+            if (newPos == location) {
+                createChildren(robotIndex + 1, sum, cost, somethingChanged);
+                continue;
+            }
+            //A robot can't move where another robot is (the same child is created with the NONE move)
+            if (isOccupied(newPos)) continue;
+            locations[robotIndex] = newPos;
+            createChildren(robotIndex + 1, sum, cost + grid.getCost(newPos), true);
+            locations[robotIndex] = location;
+        }
+    }
+
+    private boolean isOccupied(short location) {
+        for (short robotLocation : locations) {
+            if (robotLocation == location) return true;
+        }
+        return false;
+    }
+
+    private short[] getOperators(int robotIndex, short location) {
+        if (operators[robotIndex][location] == null) buildOperatorTable(robotIndex, location);
+        return operators[robotIndex][location];
+    }
+
+    private float[] getDeltas(int robotIndex, short location) {
+        if (deltas[robotIndex][location] == null) buildOperatorTable(robotIndex, location);
+        return deltas[robotIndex][location];
+    }
+
+    //Sorts the moves of the robot from this location by their change of evaluation (walls are left out, NONE changes nothing)
+    private void buildOperatorTable(int robotIndex, short location) {
+        short robot = group[robotIndex];
+        ArrayList<Short> newLocations = new ArrayList<>();
+        newLocations.add(location);
+        for (int direction = 0; direction < CompiledGrid.DIRECTIONS_NUMBER; direction++) {
+            int newPos = grid.getNeighbour(location, direction);
+            if (newPos != -1) newLocations.add((short) newPos);
+        }
+        newLocations.sort((Short location1, Short location2) -> Float.compare(getDelta(robot, location, location1), getDelta(robot, location, location2)));
+        short[] sortedLocations = new short[newLocations.size()];
+        float[] sortedDeltas = new float[newLocations.size()];
+        for (int operatorIndex = 0; operatorIndex < sortedLocations.length; operatorIndex++) {
+            sortedLocations[operatorIndex] = newLocations.get(operatorIndex);
+            sortedDeltas[operatorIndex] = getDelta(robot, location, sortedLocations[operatorIndex]);
+        }
+        operators[robotIndex][location] = sortedLocations;
+        deltas[robotIndex][location] = sortedDeltas;
+    }
+
+    private float getDelta(short robot, short location, short newLocation) {
+        if (newLocation == location) return 0;
+        return grid.getCost(newLocation) + heuristic.getHeuristicAtPos(newLocation, robot) - heuristic.getHeuristicAtPos(location, robot);
+    }
+
+    @Override
+    public String toString() {
+        return "PartialExpansion{" +
+                "childrenCreated=" + childrenCreated +
+                ", nodesRequeued=" + nodesRequeued +
+                ", robots=" + Arrays.toString(group) +
+                '}';
+    }
+}
@@ -0,0 +1,250 @@
+package search;
+
+import search.heuristics.Dijkstra;
+import search.heuristics.Euclidean;
+import search.heuristics.Heuristic;
+import search.heuristics.Landmarks;
+import search.heuristics.Manhattan;
+import search.heuristics.Pairwise;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class races several optimal searches against each other (see SearchField.portfolioSearch()).
+ *
+ * The time needed by a search depends a lot on the level: the Dijkstra heuristic is the best most of the time, but its construction
+ * is the slowest, the operator decomposition is faster than the joint moves when the robots are many, and the Conflict-Based Search
+ * is much faster when the robots rarely get in the way of each other, but much slower when they do.
+ * So instead of guessing, each configuration (a heuristic and a search engine) is searched in its own thread, with its own copy
+ * of the SearchField (its own options and its own handle, see SearchProgress.java), while the level and the robots are shared.
+ * All the configurations are optimal, so the first solution found is optimal: the other searches are then cancelled.
+ *
+ * The threads are at most the number of processors (see SearchField.setPortfolioThreadsNumber()): the configurations are started
+ * in their order, and the ones which don't fit wait for a thread. So the best configurations should come first.
+ */
+
+public class Portfolio {
+
+    //The portfolio reports the progress of its searches at this period (in milliseconds)
+    private static final long REPORT_PERIOD_MS = 100;
+
+    public enum HeuristicType {
+        DIJKSTRA,
+        MANHATTAN,
+        EUCLIDEAN,
+        PAIRWISE,
+        LANDMARKS
+    }
+
+    public enum Engine {
+        A_STAR,
+        OPERATOR_DECOMPOSITION,
+        PARTIAL_EXPANSION,
+        CONFLICT_BASED_SEARCH
+    }
+
+    //A heuristic and a search engine
+    public static class Configuration {
+
+        private final HeuristicType heuristicType;
+        private final Engine engine;
+
+        public Configuration(HeuristicType heuristicType, Engine engine) {
+            this.heuristicType = heuristicType;
+            this.engine = engine;
+        }
+
+        @Override
+        public String toString() {
+            return heuristicType + " + " + engine;
+        }
+    }
+
+    private final SearchField searchField;
+    private final List<Configuration> configurations;
+    private final int threadsNumber;
+    //The error of the last configuration which failed, kept if they all failed (see getFailure())
+    private Throwable failure;
+
+    public Portfolio(SearchField searchField, List<Configuration> configurations, int threadsNumber) {
+        this.searchField = searchField;
+        this.configurations = configurations;
+        this.threadsNumber = threadsNumber;
+    }
+
+    //Every heuristic with every engine (the partial expansion with the Dijkstra heuristic only), the best ones first
+    public static List<Configuration> getDefaultConfigurations() {
+        List<Configuration> configurations = new ArrayList<>();
+        for (Engine engine : new Engine[]{Engine.A_STAR, Engine.CONFLICT_BASED_SEARCH, Engine.OPERATOR_DECOMPOSITION}) {
+            for (HeuristicType heuristicType : HeuristicType.values()) {
+                //The Conflict-Based Search plans the robots one by one: the pairwise heuristic would only be a slower Dijkstra
+                if (heuristicType == HeuristicType.PAIRWISE && engine == Engine.CONFLICT_BASED_SEARCH) continue;
+                configurations.add(new Configuration(heuristicType, engine));
+            }
+        }
+        //The partial expansion only queues the children which have the evaluation of their parent: it is the most useful
+        //with the most accurate of the additive heuristics
+        configurations.add(new Configuration(HeuristicType.DIJKSTRA, Engine.PARTIAL_EXPANSION));
+        return configurations;
+    }
+
+    /**
+     * @return the paths of all robots (paths[i][t] is the location of the robot i after t moves) found first,
+     * or null if no configuration found a solution
+     */
+    public short[][] findPaths() {
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadsNumber, configurations.size())), (Runnable runnable) -> {
+            Thread thread = new Thread(runnable, "Portfolio");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Racer> completionService = new ExecutorCompletionService<>(executor);
+        ArrayList<Racer> racers = new ArrayList<>();
+        for (Configuration configuration : configurations) {
+            Racer racer = new Racer(configuration);
+            racers.add(racer);
+            completionService.submit(racer::search, racer);
+        }
+
+        Racer winner = null;
+        int racersRunning = racers.size();
+        int racersFailed = 0;
+        long nodesReported = 0;
+        try {
+            while (racersRunning > 0 && winner == null && !searchField.isStopRequested()) {
+                Future<Racer> result = completionService.poll(REPORT_PERIOD_MS, TimeUnit.MILLISECONDS);
+                nodesReported = reportProgress(racers, nodesReported);
+                if (result == null) continue;
+                racersRunning--;
+                try {
+                    Racer racer = result.get();
+                    if (racer.paths != null) winner = racer;
+                } catch (ExecutionException e) {
+                    //A search which failed (e.g. out of memory) leaves the race, the other ones go on
+                    System.out.println("Error in Portfolio.findPaths(): a configuration failed -> cause=" + e.getCause());
+                    failure = e.getCause();
+                    racersFailed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        } finally {
+            //The searches still running are cancelled, and the ones which have not started yet are dropped.
+            //The winner is not kept waiting for them: a heuristic being built only sees the cancellation once it is done,
+            //so they end on their own, in their daemon threads
+            for (Racer racer : racers) racer.racerField.stopSearch();
+            executor.shutdownNow();
+            //The nodes expanded by the searches and their memory, as far as they have reported them
+            reportProgress(racers, nodesReported);
+            reportMemory(racers);
+        }
+        if (racersFailed < racers.size()) failure = null;
+
+        displayDiagnosis(racers, winner, startTime);
+        return winner == null ? null : winner.paths;
+    }
+
+    //The error of the configurations if they all failed (e.g. out of memory), or null if one of them finished its search
+    Throwable getFailure() {
+        return failure;
+    }
+
+    //The handle of the portfolio gets the nodes expanded by all its searches, and the highest evaluation reached by one of them
+    private long reportProgress(ArrayList<Racer> racers, long nodesReported) {
+        long nodesExpanded = 0;
+        int bestEvaluation = -1;
+        for (Racer racer : racers) {
+            SearchProgress racerProgress = racer.racerField.getProgress();
+            nodesExpanded += racerProgress.getNodesExpanded();
+            bestEvaluation = Math.max(bestEvaluation, racerProgress.getBestEvaluation());
+        }
+        searchField.getProgress().report(nodesExpanded - nodesReported, -1, bestEvaluation);
+        return nodesExpanded;
+    }
+
+    //The racers all run at the same time: their bytes allocated and the bytes of their visited tables are added up
+    private void reportMemory(ArrayList<Racer> racers) {
+        long storageBytes = 0;
+        for (Racer racer : racers) {
+            SearchProgress racerProgress = racer.racerField.getProgress();
+            searchField.getProgress().reportBytesAllocated(racerProgress.getBytesAllocated());
+            storageBytes += racerProgress.getStorageBytes();
+        }
+        searchField.getProgress().reportStorageBytes(storageBytes);
+    }
+
+    private void displayDiagnosis(ArrayList<Racer> racers, Racer winner, long startTime) {
+        System.out.println("\nPortfolio of " + racers.size() + " configurations (" + threadsNumber + " threads):");
+        for (Racer racer : racers) {
+            String result = racer.searchTime == -1 ? "not finished" : (racer.paths == null ? "no solution" : "solution") + " in " + racer.searchTime + "ms";
+            System.out.println("\t" + racer.configuration + ": " + result + ", nodes expanded: " + racer.racerField.getProgress().getNodesExpanded());
+        }
+        if (winner != null) {
+            System.out.println("Solution found in " + (System.currentTimeMillis() - startTime) + "ms by " + winner.configuration + "!");
+            System.out.println("Total cost of solution: " + searchField.getPathsCost(winner.paths));
+        } else {
+            System.out.println("Solution not found after " + (System.currentTimeMillis() - startTime) + "ms");
+        }
+    }
+
+    //The search of one configuration, in its own copy of the SearchField
+    private class Racer {
+
+        private final Configuration configuration;
+        private final SearchField racerField;
+        private volatile short[][] paths;
+        private volatile long searchTime = -1;
+
+        private Racer(Configuration configuration) {
+            this.configuration = configuration;
+            SearchField.ExpansionMode expansionMode = SearchField.ExpansionMode.JOINT_MOVES;
+            if (configuration.engine == Engine.OPERATOR_DECOMPOSITION) expansionMode = SearchField.ExpansionMode.OPERATOR_DECOMPOSITION;
+            else if (configuration.engine == Engine.PARTIAL_EXPANSION) expansionMode = SearchField.ExpansionMode.PARTIAL_EXPANSION;
+            racerField = new SearchField(searchField, expansionMode);
+        }
+
+        private void search() {
+            //Cancelled before it could start
+            if (racerField.isStopRequested()) return;
+            long startTime = System.currentTimeMillis();
+            long bytesAllocatedBefore = SearchProgress.getThreadAllocatedBytes();
+            try {
+                //The construction of the heuristic is part of the race
+                Heuristic heuristic = createHeuristic(configuration.heuristicType, racerField);
+                short[][] racerPaths;
+                if (configuration.engine == Engine.CONFLICT_BASED_SEARCH) racerPaths = new ConflictBasedSearch(racerField, heuristic).findPaths();
+                else racerPaths = racerField.searchAllRobots(heuristic);
+                searchTime = System.currentTimeMillis() - startTime;
+                //A search stopped before its end may return the paths of its warm start, which are not optimal: they can't win
+                if (!racerField.isStopRequested()) paths = racerPaths;
+            } finally {
+                racerField.getProgress().reportBytesAllocated(SearchProgress.getThreadAllocatedBytes() - bytesAllocatedBefore);
+            }
+        }
+    }
+
+    private static Heuristic createHeuristic(HeuristicType heuristicType, SearchField searchField) {
+        switch (heuristicType) {
+            case MANHATTAN:
+                return new Manhattan(searchField);
+            case EUCLIDEAN:
+                return new Euclidean(searchField);
+            case PAIRWISE:
+                return new Pairwise(searchField);
+            case LANDMARKS:
+                return new Landmarks(searchField);
+            case DIJKSTRA:
+            default:
+                return new Dijkstra(searchField);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package search;
+
+import search.heuristics.Heuristic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * This class is a fast search engine, which is not optimal: the prioritized planning (see SearchField.prioritizedPlanning()).
+ *
+ * The robots are given an order of priority, and the path of each robot is searched alone, in space and time (see SpaceTimeAStar.java),
+ * avoiding the paths of the robots of higher priority, which are reserved (see Reservations below). A robot stays on its goal
+ * once its path is over, so its goal is reserved forever after its last step.
+ * So the paths found never get in the way of each other, and only one single-robot search is done per robot: the time needed grows
+ * about linearly with the number of robots, when it grows exponentially for the A*.
+ *
+ * A robot may have no path at all avoiding the robots of higher priority (e.g. a robot of higher priority stays forever on a goal
+ * in the only corridor it has to go through). Then the planning starts again with other priorities:
+ *      - first the order of the robots in RobotData
+ *      - then the robots farthest from their goals first (their heuristic), which are the most likely to be in the way of the others
+ *      - then random orders, until the time limit (see SearchField.setPrioritizedPlanningTime())
+ * The random orders always come from the same seed, so a level always gives the same paths.
+ *
+ * The cost of the paths found is an upper bound of the cost of the optimal solution, so they can be used as a warm start
+ * by the optimal searches (see SearchField.setWarmStart()).
+ */
+
+public class PrioritizedPlanning {
+
+    private static final long RANDOM_SEED = 0;
+
+    private final SearchField searchField;
+    private final Heuristic heuristic;
+    private final SpaceTimeAStar lowLevelSearch;
+    private final short robotsNumber;
+    private final long timeLimit;
+    private int attemptsNumber;
+
+    /**
+     * @param timeLimit is the time (in milliseconds) after which no new order of priority is tried
+     */
+    public PrioritizedPlanning(SearchField searchField, Heuristic heuristic, long timeLimit) {
+        this.searchField = searchField;
+        this.heuristic = heuristic;
+        this.lowLevelSearch = new SpaceTimeAStar(searchField, heuristic);
+        this.robotsNumber = searchField.getRobotData().getRobotsNumber();
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     * @return the paths of all robots (paths[i][t] is the location of the robot i after t moves), or null if no order of priority
+     * gave a solution before the time limit
+     */
+    public short[][] findPaths() {
+        long startTime = System.currentTimeMillis();
+        Random random = new Random(RANDOM_SEED);
+        ArrayList<Short> order = new ArrayList<>();
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) order.add(robotIndex);
+        short[][] paths = null;
+        attemptsNumber = 0;
+        while (paths == null && !searchField.isStopRequested()) {
+            if (attemptsNumber == 1) {
+                short[] startLocations = searchField.getStartLocations(searchField.getAllRobotsIndexes());
+                order.sort((Short robot1, Short robot2) -> Float.compare(heuristic.getHeuristicAtPos(startLocations[robot2], robot2),
+                        heuristic.getHeuristicAtPos(startLocations[robot1], robot1)));
+            } else if (attemptsNumber > 1) {
+                if (System.currentTimeMillis() - startTime > timeLimit) break;
+                Collections.shuffle(order, random);
+            }
+            attemptsNumber++;
+            paths = planInOrder(order);
+        }
+
+        //The nodes of the searches of the robots are only reported at the end
+        searchField.getProgress().report(lowLevelSearch.getNodesDequeued(), -1, -1);
+        if (paths != null)
+            System.out.println("Solution found in " + (System.currentTimeMillis() - startTime) + "ms!");
+        else
+            System.out.println("Solution not found after " + (System.currentTimeMillis() - startTime) + "ms:");
+        System.out.println("Orders of priority tried: " + attemptsNumber + "\nLow level nodes dequeued: " + lowLevelSearch.getNodesDequeued());
+        if (paths != null) System.out.println("Total cost of solution: " + searchField.getPathsCost(paths) + " (priorities: " + order + ")");
+        return paths;
+    }
+
+    //Searches the path of each robot, in the order given. Returns null as soon as a robot has no path.
+    private short[][] planInOrder(ArrayList<Short> order) {
+        short[][] paths = new short[robotsNumber][];
+        Reservations reservations = new Reservations(searchField.getStartLocations(searchField.getAllRobotsIndexes()), searchField.getGrid().getLocationsNumber());
+        for (short robotIndex : order) {
+            //A robot of higher priority enters the start location of this robot at the first step, before it can leave
+            if (reservations.isForbidden(robotIndex, searchField.getRobotData().getStartLocationForRobot(robotIndex), 0)) return null;
+            short[] path = lowLevelSearch.findPath(robotIndex, reservations);
+            if (path == null) return null;
+            reservations.reserve(robotIndex, path);
+            paths[robotIndex] = path;
+        }
+        return paths;
+    }
+
+    /**
+     * The locations taken by the robots already planned, at each step: a robot can't be on a location at a step if it would
+     * be in conflict with a robot already planned (see Conflict.isInConflict()).
+     * At step 0, every robot is on its start location, even the ones which are not planned yet.
+     * Once the path of a robot is over, it stays on its goal: after the last step of the longest path, the reservations don't change anymore.
+     */
+    private static class Reservations implements SpaceTimeConstraints {
+
+        //Robot on each location at each step, plus one (0 is free): steps.get(step)[location]
+        private final ArrayList<int[]> steps = new ArrayList<>();
+        //Robot staying on each location forever, plus one
+        private final int[] finalLocations;
+        //Last step at which each location is reserved
+        private final int[] lastReservedSteps;
+
+        private Reservations(short[] startLocations, int locationsNumber) {
+            finalLocations = new int[locationsNumber];
+            lastReservedSteps = new int[locationsNumber];
+            Arrays.fill(lastReservedSteps, -1);
+            int[] firstStep = new int[locationsNumber];
+            for (short robotIndex = 0; robotIndex < startLocations.length; robotIndex++) {
+                firstStep[startLocations[robotIndex]] = robotIndex + 1;
+                lastReservedSteps[startLocations[robotIndex]] = 0;
+            }
+            steps.add(firstStep);
+        }
+
+        private void reserve(short robotIndex, short[] path) {
+            //The steps after the end of the reservations are the same as the last one
+            while (steps.size() < path.length) steps.add(finalLocations.clone());
+            for (int step = 0; step < steps.size(); step++) steps.get(step)[Conflict.getLocationAtStep(path, step)] = robotIndex + 1;
+            short goalLocation = path[path.length - 1];
+            finalLocations[goalLocation] = robotIndex + 1;
+            for (int step = 0; step < path.length; step++) lastReservedSteps[path[step]] = Math.max(lastReservedSteps[path[step]], step);
+            lastReservedSteps[goalLocation] = steps.size() - 1;
+        }
+
+        private int getRobot(short location, int step) {
+            return (step < steps.size() ? steps.get(step)[location] : finalLocations[location]) - 1;
+        }
+
+        @Override
+        public boolean isForbidden(short robotIndex, short location, int step) {
+            int robot = getRobot(location, step);
+            if (robot != -1 && robot != robotIndex) return true;
+            //The robot which moves first can't go to the location the other one has not left yet
+            if (step > 0 && getRobot(location, step - 1) > robotIndex) return true;
+            int nextRobot = getRobot(location, step + 1);
+            return nextRobot != -1 && nextRobot < robotIndex;
+        }
+
+        //A reserved location may still be forbidden one step after its reservation
+        @Override
+        public int getLastForbiddenStep(short robotIndex, short location) {
+            if (lastReservedSteps[location] == -1) return -1;
+            if (finalLocations[location] != 0) return Integer.MAX_VALUE;
+            return lastReservedSteps[location] + 1;
+        }
+
+        @Override
+        public int getLastForbiddenStep(short robotIndex) {
+            return steps.size();
+        }
+    }
+}
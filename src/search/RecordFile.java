@@ -0,0 +1,94 @@
+package search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * This class is a file of fixed-width records, used by the external-memory A* (see ExternalMemoryAStar.java) to keep
+ * configurations on the disk instead of the heap. A record is:
+ *      - the packed locations of the robots (see PackedLocations.java), keyLength longs
+ *      - the cost of the configuration, an int
+ *      - a reference to its parent (the index of the record of the parent in another file), a long
+ * Records are only appended, and read back by their index (0, 1, 2, ... in order of appending).
+ *
+ * The file is memory-mapped by segments of SEGMENT_BYTES, mapped when the first record of the segment is appended:
+ * the operating system moves the pages between the memory and the disk, and the heap only holds the list of segments.
+ * The file is deleted by delete(), and when the program exits if it has not been deleted before.
+ */
+
+class RecordFile {
+
+    private static final int SEGMENT_BYTES = 1 << 22;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final int keyLength;
+    private final int recordSize;
+    private final int recordsPerSegment;
+    private final ArrayList<MappedByteBuffer> segments = new ArrayList<>();
+    private long size;
+
+    RecordFile(File directory, String prefix, int keyLength) throws IOException {
+        this.file = File.createTempFile(prefix, ".records", directory);
+        file.deleteOnExit();
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = randomAccessFile.getChannel();
+        this.keyLength = keyLength;
+        this.recordSize = keyLength * Long.BYTES + Integer.BYTES + Long.BYTES;
+        this.recordsPerSegment = Math.max(1, SEGMENT_BYTES / recordSize);
+    }
+
+    //Appends a record and returns its index
+    long append(long[] key, int offset, int cost, long parent) throws IOException {
+        int segmentIndex = (int) (size / recordsPerSegment);
+        if (segmentIndex == segments.size())
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) segmentIndex * recordsPerSegment * recordSize, (long) recordsPerSegment * recordSize));
+        MappedByteBuffer segment = segments.get(segmentIndex);
+        int position = (int) (size % recordsPerSegment) * recordSize;
+        for (int word = 0; word < keyLength; word++) segment.putLong(position + word * Long.BYTES, key[offset + word]);
+        segment.putInt(position + keyLength * Long.BYTES, cost);
+        segment.putLong(position + keyLength * Long.BYTES + Integer.BYTES, parent);
+        return size++;
+    }
+
+    void readKey(long index, long[] key, int offset) {
+        MappedByteBuffer segment = segments.get((int) (index / recordsPerSegment));
+        int position = (int) (index % recordsPerSegment) * recordSize;
+        for (int word = 0; word < keyLength; word++) key[offset + word] = segment.getLong(position + word * Long.BYTES);
+    }
+
+    int getCost(long index) {
+        int position = (int) (index % recordsPerSegment) * recordSize;
+        return segments.get((int) (index / recordsPerSegment)).getInt(position + keyLength * Long.BYTES);
+    }
+
+    long getParent(long index) {
+        int position = (int) (index % recordsPerSegment) * recordSize;
+        return segments.get((int) (index / recordsPerSegment)).getLong(position + keyLength * Long.BYTES + Integer.BYTES);
+    }
+
+    long size() {
+        return size;
+    }
+
+    long getBytesUsed() {
+        return size * recordSize;
+    }
+
+    //The segments can't be unmapped explicitly: they are released by the garbage collector, the file can be deleted before
+    void delete() {
+        segments.clear();
+        try {
+            channel.close();
+            randomAccessFile.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (!file.delete()) System.out.println("Error in RecordFile.delete(): the file could not be deleted -> file=" + file);
+    }
+}
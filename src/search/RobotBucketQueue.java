@@ -0,0 +1,153 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class is another open list for the A* search, which can replace RobotPriorityQueue (see SearchField.setOpenListType()).
+ *
+ * The costs of the blocks are small integers (1 for empty blocks and goals, 5 for traps), so the total evaluation of a node
+ * can be handled as an integer (see Node.getIntegerEvaluation()). Instead of a binary heap, where adding and polling a node
+ * cost O(log n) comparisons, nodes are stored into buckets: the bucket number f contains every node whose evaluation is f.
+ * Adding a node is O(1): it is pushed into its bucket. Polling a node is O(1) too: it is taken from the first non-empty bucket,
+ * and with our heuristics the evaluations of the nodes polled never decrease, so we never have to look back.
+ *
+ * Inside a bucket, nodes are stored into a second level of buckets, indexed by their cost. This allows choosing which node
+ * of equal evaluation is polled first:
+ *      - HIGHEST_COST_FIRST: the deepest node is polled first, i.e. the one which is the closest to the goals (default)
+ *      - LOWEST_COST_FIRST: the shallowest node is polled first
+ * Nodes of equal evaluation and equal cost are polled in LIFO order.
+ */
+
+public class RobotBucketQueue implements OpenList {
+
+    public enum TieBreaking {
+        HIGHEST_COST_FIRST,
+        LOWEST_COST_FIRST
+    }
+
+    //Nodes whose evaluation is bigger than this are refused: this would mean that a robot can't reach its goal anymore
+    private static final int MAX_EVALUATION = 1 << 24;
+
+    private final TieBreaking tieBreaking;
+    private ArrayList<Bucket> buckets;
+    private int minEvaluation;
+    private int size;
+
+    public RobotBucketQueue() {
+        this(TieBreaking.HIGHEST_COST_FIRST);
+    }
+
+    public RobotBucketQueue(TieBreaking tieBreaking) {
+        this.tieBreaking = tieBreaking;
+        buckets = new ArrayList<>();
+        minEvaluation = 0;
+        size = 0;
+    }
+
+    @Override
+    public boolean add(Node node) {
+        int evaluation = node.getIntegerEvaluation();
+        if (evaluation < 0 || evaluation > MAX_EVALUATION) {
+            System.out.println("Error in RobotBucketQueue.add(): evaluation out of range -> evaluation=" + evaluation);
+            return false;
+        }
+        while (buckets.size() <= evaluation) buckets.add(null);
+        if (buckets.get(evaluation) == null) buckets.set(evaluation, new Bucket());
+        buckets.get(evaluation).push(node);
+        //This only happens if the heuristic is not consistent
+        if (evaluation < minEvaluation) minEvaluation = evaluation;
+        size++;
+        return true;
+    }
+
+    @Override
+    public Node poll() {
+        if (size == 0) return null;
+        //Look for the first non-empty bucket
+        while (buckets.get(minEvaluation) == null || buckets.get(minEvaluation).isEmpty()) minEvaluation++;
+        size--;
+        return buckets.get(minEvaluation).pop(tieBreaking);
+    }
+
+    public Node peek() {
+        if (size == 0) return null;
+        while (buckets.get(minEvaluation) == null || buckets.get(minEvaluation).isEmpty()) minEvaluation++;
+        return buckets.get(minEvaluation).peek(tieBreaking);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        buckets.clear();
+        minEvaluation = 0;
+        size = 0;
+    }
+
+    //A bucket of nodes of equal evaluation, in which nodes are stored into stacks indexed by their cost
+    private static class Bucket {
+
+        private Node[][] stacks = new Node[0][];
+        private int[] stackSizes = new int[0];
+        private int nodesNumber;
+        //Every non-empty stack has an index between these two bounds
+        private int minCost = Integer.MAX_VALUE;
+        private int maxCost = -1;
+
+        private void push(Node node) {
+            int cost = node.getCost();
+            if (cost >= stacks.length) {
+                int newLength = Math.max(cost + 1, stacks.length * 2);
+                stacks = Arrays.copyOf(stacks, newLength);
+                stackSizes = Arrays.copyOf(stackSizes, newLength);
+            }
+            if (stacks[cost] == null) stacks[cost] = new Node[4];
+            if (stackSizes[cost] == stacks[cost].length)
+                stacks[cost] = Arrays.copyOf(stacks[cost], stackSizes[cost] * 2);
+            stacks[cost][stackSizes[cost]++] = node;
+            nodesNumber++;
+            if (cost < minCost) minCost = cost;
+            if (cost > maxCost) maxCost = cost;
+        }
+
+        private Node pop(TieBreaking tieBreaking) {
+            int cost = findStack(tieBreaking);
+            Node node = stacks[cost][--stackSizes[cost]];
+            stacks[cost][stackSizes[cost]] = null;
+            nodesNumber--;
+            if (nodesNumber == 0) {
+                minCost = Integer.MAX_VALUE;
+                maxCost = -1;
+            }
+            return node;
+        }
+
+        private Node peek(TieBreaking tieBreaking) {
+            int cost = findStack(tieBreaking);
+            return stacks[cost][stackSizes[cost] - 1];
+        }
+
+        //Moves the bound of the chosen side until a non-empty stack is found
+        private int findStack(TieBreaking tieBreaking) {
+            if (tieBreaking == TieBreaking.HIGHEST_COST_FIRST) {
+                while (stackSizes[maxCost] == 0) maxCost--;
+                return maxCost;
+            }
+            while (stackSizes[minCost] == 0) minCost++;
+            return minCost;
+        }
+
+        private boolean isEmpty() {
+            return nodesNumber == 0;
+        }
+    }
+}
@@ -1,16 +1,23 @@
 package search;
 
 import field.BlockType;
+import field.CompiledGrid;
 import field.Direction;
 import files.FileRead;
 import graphics.Window;
 import robots.Robot;
 import robots.RobotData;
 import search.heuristics.Heuristic;
+import search.heuristics.HeuristicCache;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.BiPredicate;
 
 /**
  * Created by Nicolas on 11/10/2016
@@ -26,12 +33,54 @@ public class SearchField {
     private String levelName;
 
     //Structures containing useful data
-    private static ArrayList<BlockType> matrix; //Contains the map (i.e. the type of each block)
+    //Each SearchField has its own level, so that several levels can be searched at the same time (see BatchSolver.java)
+    private ArrayList<BlockType> matrix;        //Contains the map (i.e. the type of each block)
+    private CompiledGrid grid;                  //The same map, compiled for the searches (see CompiledGrid.java)
     private RobotData robotData;                //Contains robots information
 
     //Search tools
     private ArrayList<Direction> directionsList;
-    private boolean isSearching;
+    //The searches may run in another thread than the display (see submitSearch())
+    private volatile boolean isSearching;
+    private volatile SearchProgress progress;
+    private long nodeBudget = Long.MAX_VALUE;
+    private long timeBudget = Long.MAX_VALUE;
+    private List<Portfolio.Configuration> portfolioConfigurations = Portfolio.getDefaultConfigurations();
+    private int portfolioThreadsNumber = Runtime.getRuntime().availableProcessors();
+    private boolean useIndependenceDetection = false;
+    private OpenListType openListType = OpenListType.PRIORITY_QUEUE;
+    private ExpansionMode expansionMode = ExpansionMode.JOINT_MOVES;
+    private RobotBucketQueue.TieBreaking tieBreaking = RobotBucketQueue.TieBreaking.HIGHEST_COST_FIRST;
+    private int workersNumber = 1;
+    private boolean useIterativeDeepening = false;
+    private int transpositionTableSize = 1 << 20;
+    private int windowSize = 8;
+    private boolean useWarmStart = false;
+    private long prioritizedPlanningTime = 1000;
+    private File externalMemoryDirectory = null;
+    private long externalMemoryBudget = 1L << 28;
+    private NodeStorageType nodeStorageType = NodeStorageType.HEAP;
+    private long offHeapMemoryCap = 1L << 30;
+    private String heuristicCacheDirectory = HeuristicCache.DIRECTORY;
+
+    //The open list used by the A* searches (see OpenList.java)
+    public enum OpenListType {
+        PRIORITY_QUEUE,
+        BUCKET_QUEUE
+    }
+
+    //Where the A* searches keep the configurations they visited (see NodeStorage.java)
+    public enum NodeStorageType {
+        HEAP,
+        OFF_HEAP
+    }
+
+    //The way children nodes are created in AStar()
+    public enum ExpansionMode {
+        JOINT_MOVES,
+        OPERATOR_DECOMPOSITION,
+        PARTIAL_EXPANSION
+    }
 
     public SearchField(String levelName) {
         isSearching = false;
@@ -41,6 +90,34 @@ public class SearchField {
         loadDataFromLevel();
     }
 
+    /**
+     * A copy of the model for a configuration of the portfolio (see Portfolio.java): the level and the robots are shared with the model
+     * (the searches only read them), but the copy has its own options and its own handle, so that it can be stopped alone.
+     * The portfolio already uses all the threads: the copy searches in a single thread, in memory.
+     */
+    SearchField(SearchField model, ExpansionMode expansionMode) {
+        isSearching = false;
+        levelName = model.levelName;
+        rowNumber = model.rowNumber;
+        columnNumber = model.columnNumber;
+        matrix = model.matrix;
+        grid = model.grid;
+        robotData = model.robotData;
+        directionsList = new ArrayList<>();
+        useIndependenceDetection = model.useIndependenceDetection;
+        openListType = model.openListType;
+        nodeStorageType = model.nodeStorageType;
+        offHeapMemoryCap = model.offHeapMemoryCap;
+        this.expansionMode = expansionMode;
+        tieBreaking = model.tieBreaking;
+        useWarmStart = model.useWarmStart;
+        prioritizedPlanningTime = model.prioritizedPlanningTime;
+        nodeBudget = model.nodeBudget;
+        timeBudget = model.timeBudget;
+        heuristicCacheDirectory = model.heuristicCacheDirectory;
+        progress = new SearchProgress(nodeBudget, timeBudget);
+    }
+
     /**
      * This method is our second version of the A* (the first version is not used anymore, but the code is still present in this file)
      *
@@ -55,7 +132,19 @@ public class SearchField {
      * A technique to "remove" the NONE direction from this list was studied with the class Zar (in search.heuristics package).
      * See the comments in this class for more information.
      *
+     * The children can be created in two ways (see setExpansionMode()):
+     *      - JOINT_MOVES: every combination of moves for all robots creates a child (5^n children for n robots, see JointMoveEnumerator.java)
+     *      - OPERATOR_DECOMPOSITION: only one robot is given its move in each child (5 children), the next robot is given
+     *        its move in the children of this child, and so on. After the move of the last robot, we are back to a standard
+     *        state. Intermediate states are inserted in the priority queue like standard states, so the search is still optimal,
+     *        but a node whose heuristic is bad is left after the move of one robot, instead of after creating its 5^n children.
+     *      - PARTIAL_EXPANSION: the children are the ones of JOINT_MOVES, but a node only creates the children whose evaluation
+     *        is its own, and goes back into the priority queue with the evaluation of its next children (see PartialExpansion.java)
+     * All ways find the same paths: in all of them robots move one after the other, by order of index.
+     *
      * We use a custom PriorityQueue, see more in the comments of the file PriorityQueue.java (in search package)
+     * The open list can also be a bucket queue, see setOpenListType() and the comments of the file RobotBucketQueue.java
+     * The visited configurations can also be kept out of the heap, see setNodeStorageType() and the comments of the file OffHeapNodeStorage.java
      *
      * @param heuristic is an object whose class depends on the heuristic we want to use: Dijkstra, Manhattan, or Euclide.
      *                  Those three classes inherit from the class Heuristic
@@ -65,88 +154,300 @@ public class SearchField {
         clearSearch();
         //We build the directions list with "true" parameter when we want the NONE direction to be in the list, false otherwise
         buildDirectionsList(true);
+        short[][] paths = searchAllRobots(heuristic);
+        //Decode the solution found to build the robots path (their stack of directions)
+        if (paths != null) constructPaths(paths);
+        endSearch();
+    }
+
+    //The A* itself, without touching the robots: it is also run by the portfolio (see Portfolio.java)
+    short[][] searchAllRobots(Heuristic heuristic) {
+        //Search the paths of all robots together, or group by group (see IndependenceDetection.java)
+        if (useIndependenceDetection) return new IndependenceDetection(this, heuristic).findPaths();
+        //The paths of the prioritized planning are a solution: only the nodes which may lead to a cheaper one are searched
+        short[][] warmStartPaths = useWarmStart ? new PrioritizedPlanning(this, heuristic, prioritizedPlanningTime).findPaths() : null;
+        int costBound = (warmStartPaths == null) ? Integer.MAX_VALUE : getPathsCost(warmStartPaths);
+        short[][] paths = searchGroup(getAllRobotsIndexes(), heuristic, costBound);
+        //A search stopped before its end still has the paths of the warm start, but they are only known to be optimal
+        //when the search went through all the cheaper nodes
+        if (paths == null && warmStartPaths != null) {
+            if (!isStopRequested()) System.out.println("No solution cheaper than the warm start: its paths are optimal");
+            paths = warmStartPaths;
+        }
+        return paths;
+    }
+
+    /**
+     * This method is another search engine: the Conflict-Based Search, which searches the path of each robot alone and only
+     * handles the robots getting in the way of each other when their paths meet. See the comments of the file ConflictBasedSearch.java
+     * Like the A*, it finds optimal paths, with the same moves for the robots.
+     *
+     * @param heuristic is the heuristic used by the search of the path of each robot (see SpaceTimeAStar.java)
+     */
+    public void conflictBasedSearch(Heuristic heuristic) {
+        System.out.println("\n" + heuristic.type() + " - Conflict-Based Search\n");
+        clearSearch();
+        short[][] paths = new ConflictBasedSearch(this, heuristic).findPaths();
+        //Decode the solution found to build the robots path (their stack of directions)
+        if (paths != null) constructPaths(paths);
+        endSearch();
+    }
+
+    /**
+     * This method is an anytime version of the A*: it finds a first solution very quickly, then better and better ones until the optimal one.
+     * See the comments of the file AnytimeAStar.java
+     * Every solution found is given to RobotData (see RobotData.offerPlan()), so this method can run in another thread
+     * while the robots already follow the best solution found yet. It can be stopped with stopSearch().
+     *
+     * @param heuristic is the heuristic used by the search, it should be admissible for the last solution to be optimal
+     */
+    public void anytimeAStar(Heuristic heuristic) {
+        System.out.println("\n" + heuristic.type() + " - Anytime A*\n");
+        clearSearch();
+        buildDirectionsList(true);
+        AnytimeAStar anytimeAStar = new AnytimeAStar(this, heuristic);
+        //The robots follow the paths of the prioritized planning while the first solution of the anytime A* is searched
+        if (useWarmStart) {
+            short[][] warmStartPaths = new PrioritizedPlanning(this, heuristic, prioritizedPlanningTime).findPaths();
+            if (warmStartPaths != null) {
+                robotData.offerPlan(warmStartPaths);
+                anytimeAStar.setInitialSolution(warmStartPaths, getPathsCost(warmStartPaths));
+            }
+        }
+        anytimeAStar.searchGroup(getAllRobotsIndexes(), robotData::offerPlan);
+        endSearch();
+    }
+
+    /**
+     * This method races several optimal searches (heuristics and search engines) in parallel threads, and keeps the solution
+     * found first: the other searches are cancelled. See the comments of the file Portfolio.java
+     * The heuristics are built by the searches (see setPortfolioConfigurations()).
+     */
+    public void portfolioSearch() {
+        System.out.println("\nPortfolio\n");
+        clearSearch();
+        short[][] paths = new Portfolio(this, portfolioConfigurations, portfolioThreadsNumber).findPaths();
+        //Decode the solution found to build the robots path (their stack of directions)
+        if (paths != null) constructPaths(paths);
+        endSearch();
+    }
+
+    /**
+     * This method searches the paths of all robots like portfolioSearch(), with the configurations given (a single configuration
+     * is searched alone), but the robots don't follow them: this is the search of the programs without display (see BatchSolver.java).
+     * The number of nodes expanded is then given by getProgress().
+     *
+     * @return the paths of all robots (paths[i][t] is the location of the robot i after t moves), or null if no solution was found
+     * @throws IllegalStateException if all the configurations failed (e.g. out of memory), which is not the lack of solution
+     */
+    public short[][] findPaths(List<Portfolio.Configuration> configurations, int threadsNumber) {
+        clearSearch();
+        Portfolio portfolio = new Portfolio(this, configurations, threadsNumber);
+        short[][] paths = portfolio.findPaths();
+        endSearch();
+        if (portfolio.getFailure() != null) throw new IllegalStateException("every configuration failed", portfolio.getFailure());
+        return paths;
+    }
+
+    /**
+     * This method is a fast but not optimal search engine, whose time grows about linearly with the number of robots:
+     * the path of each robot is searched alone, avoiding the paths of the robots of higher priority.
+     * See the comments of the file PrioritizedPlanning.java
+     *
+     * @param heuristic is the heuristic used by the search of the path of each robot (see SpaceTimeAStar.java)
+     */
+    public void prioritizedPlanning(Heuristic heuristic) {
+        System.out.println("\n" + heuristic.type() + " - Prioritized planning\n");
+        clearSearch();
+        short[][] paths = new PrioritizedPlanning(this, heuristic, prioritizedPlanningTime).findPaths();
+        //Decode the solution found to build the robots path (their stack of directions)
+        if (paths != null) constructPaths(paths);
+        endSearch();
+    }
+
+    /**
+     * This method is a fast but not optimal search engine, for levels with many robots: the Windowed Hierarchical Cooperative A*,
+     * which plans the robots one after the other in a shared reservation table, windowSize steps at a time.
+     * See the comments of the file WindowedCooperativeAStar.java
+     *
+     * @param heuristic gives the true cost from each location to each goal: it should be the Dijkstra heuristic
+     */
+    public void windowedCooperativeAStar(Heuristic heuristic) {
+        System.out.println("\n" + heuristic.type() + " - Windowed Cooperative A*\n");
+        clearSearch();
+        short[][] paths = new WindowedCooperativeAStar(this, heuristic, windowSize).findPaths();
+        //Decode the solution found to build the robots path (their stack of directions)
+        if (paths != null) constructPaths(paths);
+        endSearch();
+    }
+
+    /**
+     * Runs a search (e.g. searchField -> searchField.AStar(new Dijkstra(searchField))) with the executor, so that the thread
+     * of the display is not blocked while it searches.
+     * The robots are only changed by the thread of the display: it resets them (see RobotData.reInit()) before calling this method.
+     *
+     * @return the handle of the search: its progress, and its cancellation (see SearchProgress.java)
+     */
+    public SearchProgress submitSearch(ExecutorService executor, Consumer<SearchField> search) {
+        SearchProgress searchProgress = new SearchProgress(nodeBudget, timeBudget);
+        progress = searchProgress;
+        isSearching = true;
+        searchProgress.setFuture(executor.submit(() -> {
+            try {
+                search.accept(this);
+            } finally {
+                //Even if the search failed
+                isSearching = false;
+                searchProgress.setDone();
+            }
+        }));
+        return searchProgress;
+    }
+
+    //Asks the search running in another thread to stop as soon as possible
+    public void stopSearch() {
+        if (progress != null) progress.cancel();
+    }
+
+    //The searches check it regularly: the search has been cancelled, or its budget is spent
+    boolean isStopRequested() {
+        return progress != null && progress.isStopRequested();
+    }
+
+    //The handle of the search running, or of the last one
+    public SearchProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * This method is the A* search itself, for a group of robots: the robots which are not in the group are ignored.
+     * When the group contains all robots, this is the search described above.
+     *
+     * @param group contains the indexes of the robots of the group, in increasing order
+     * @return the paths of the robots of the group (paths[i][t] is the location of the robot group[i] after t moves),
+     * or null if no solution was found
+     */
+    short[][] searchGroup(short[] group, Heuristic heuristic) {
+        return searchGroup(group, heuristic, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same search, when a solution of cost costBound is already known (see setWarmStart()): the nodes whose evaluation is not lower
+     * than costBound can't lead to a cheaper solution, so they are not added to the priority queue (the heuristic must be admissible).
+     * Only the A* uses the bound: the external-memory A*, the IDA* and the parallel A* ignore it.
+     *
+     * @return the paths of a solution cheaper than costBound, or null if there is none
+     */
+    short[][] searchGroup(short[] group, Heuristic heuristic, int costBound) {
+        //The same search, with the nodes on the disk (see ExternalMemoryAStar.java)
+        if (externalMemoryDirectory != null) return new ExternalMemoryAStar(this, heuristic, externalMemoryDirectory, externalMemoryBudget).searchGroup(group);
+        //The same search, in near-constant memory (see IterativeDeepeningAStar.java)
+        if (useIterativeDeepening) return new IterativeDeepeningAStar(this, heuristic, transpositionTableSize).searchGroup(group);
+        //The same search, shared between several threads (see ParallelAStar.java)
+        if (workersNumber > 1) return new ParallelAStar(this, heuristic, workersNumber).searchGroup(group);
         //Counters of nodes
         long nodesAddedToPriorityQueue = 0;
         long nodesDequeued = 0;
-        //Tools: PriorityQueue (OpenList), HashMap (ClosedList), List of possibilities of moves
-        RobotPriorityQueue robotPriorityQueue = new RobotPriorityQueue();
-        HashMap<Integer, Node> closedList = new HashMap<>();
-        ArrayList<ArrayList<Direction>> movesPossibilities;
+        boolean isDecomposed = (expansionMode == ExpansionMode.OPERATOR_DECOMPOSITION);
         //Creation of the initial node
-        Node node = new Node(robotData.getRobotsList());
+        Node node = new Node(getStartLocations(group), isDecomposed);
+        //Tools: OpenList, VisitedTable (ClosedList), List of possibilities of moves
+        OpenList robotPriorityQueue = createOpenList();
+        VisitedTable visitedTable = createVisitedTable(node.getPackedLocations().length);
+        JointMoveEnumerator jointMoves = null;
+        PartialExpansion partialExpansion = null;
+        boolean isSolutionFound = false;
+        SearchProgress searchProgress = progress;
         //Storing initial node
+        node.setIndex(visitedTable.add(node, -1));
+        node.setHeuristic(heuristic.getTotalHeuristic(node, group));
         robotPriorityQueue.add(node);
         //Creating chronometer
         long startTime = System.currentTimeMillis();
-        //Construct list of all combinations of simultaneous moves for the robots
-        movesPossibilities = moveCombinations();
+        //Tool going through the combinations of simultaneous moves for the robots (not needed with the operator decomposition,
+        //nor with the partial expansion, whose combinations are built from the operator tables).
+        //The children already visited with a lower or equal cost are not even created.
+        //The partial expansion needs a heuristic which is the sum of the ones of the robots: otherwise, every child is created
+        if (expansionMode == ExpansionMode.PARTIAL_EXPANSION && heuristic.isAdditive()) partialExpansion = new PartialExpansion(this, heuristic, group);
+        else if (!isDecomposed) jointMoves = new JointMoveEnumerator(this, group.length, (long[] key, int hash, int cost) -> {
+            int index = visitedTable.find(key, 0, hash);
+            return index == -1 || cost < visitedTable.getCost(index);
+        });
+        //Every new child is recorded in the visited table, and added to the priority queue if it is new or cheaper than before
+        BiPredicate<Node, Node> childHandler = (Node parent, Node nodeChild) -> {
+            if (!markVisited(visitedTable, nodeChild, parent.getIndex())) return false;
+            //The heuristic is the sum of all the current robots heuristics
+            nodeChild.setHeuristic(heuristic.getTotalHeuristic(nodeChild, group));
+            //A cheaper path to this configuration may still be found later, with a lower evaluation
+            if (nodeChild.getIntegerEvaluation() >= costBound) return false;
+            return robotPriorityQueue.add(nodeChild);
+        };
         //The algorithm keeps running while there is something in the priority queue
         while (!robotPriorityQueue.isEmpty()) {
             //Retrieve the most optimistic node we found yet
             node = robotPriorityQueue.poll();
+            //If a cheaper path to this configuration has been found since this node was queued, it has already been queued again: skip it
+            if (node.getCost() > visitedTable.getCost(node.getIndex())) continue;
             nodesDequeued++;
-            //Mark this node to avoid revisiting it
-            closedList.putIfAbsent(node.hashCode(), node);
             //Test if this node is solution
-            if (areRobotsOnGoals(node)) break;
+            if (node.isStandardState() && areRobotsOnGoals(node, group)) {
+                isSolutionFound = true;
+                break;
+            }
+            //Let the display know how far the search is, and stop if it has been cancelled
+            if (nodesDequeued % SearchProgress.REPORT_PERIOD == 0
+                    && searchProgress.report(SearchProgress.REPORT_PERIOD, robotPriorityQueue.size(), node.getIntegerEvaluation())) break;
             //Search for neighbour states
-            for (int listIndex = 0; listIndex < movesPossibilities.size(); listIndex++) {
-                //Get one of the possibilities of moves for all robots, encoded in a list of n_robots directions
-                ArrayList<Direction> movePossibility = movesPossibilities.get(listIndex);
-                boolean somethingChanged = false;
-                //Construct a child node with the parent node as a model
-                Node nodeChild = new Node(node.getCost(), node.getRobotsList(), node.hashCode());
-                //Move every robot in the node child according to the movePossibility list of directions
-                for (short robotIndex = 0; robotIndex < robotData.getRobotsNumber(); robotIndex++) {
-                    //For each robot, if it can take its attributed direction, update the child node
-                    if (canRobotMove(nodeChild, robotIndex, movePossibility.get(robotIndex))) {
-                        somethingChanged = true;
-                        //If the robot can move, add cost of move and update the nodeChild list
-                        short newPos = getNewPosWithDir(node.getRobotsList().get(robotIndex).getCurrentLocation(), movePossibility.get(robotIndex));
-                        nodeChild.setCost(nodeChild.getCost() + getBlockCost(newPos));
-                        nodeChild.moveRobot(robotIndex, movePossibility.get(robotIndex));
-                    }
-                }
-                //If no robot has been able to move (walls or other robots blocking), do nothing
-                if (somethingChanged) {
-                    //The heuristic is the sum of all the current robots heuristics
-                    nodeChild.setHeuristic(heuristic.getTotalHeuristic(nodeChild.getListOfRobotsLocations()));
-                    //If the node is already in closedList (already marked) but the new node is more optimistic, we just replace it
-                    if (closedList.containsKey(nodeChild.hashCode())) {
-                        if (closedList.get(node.hashCode()).getTotalEvaluation() > nodeChild.getTotalEvaluation()) {
-                            closedList.remove(nodeChild.hashCode());
-                            closedList.put(nodeChild.hashCode(), nodeChild);
-                        }
-                    } else {
-                        //If not already marked, add the new node to the priority queue
-                        if (robotPriorityQueue.add(nodeChild)) nodesAddedToPriorityQueue++;
-                    }
-                }
+            if (partialExpansion == null) {
+                nodesAddedToPriorityQueue += expandNode(node, jointMoves, childHandler);
+                continue;
             }
+            nodesAddedToPriorityQueue += partialExpansion.expandNode(node, childHandler);
+            //The node goes back into the priority queue with the evaluation of the children it has not created yet
+            if (partialExpansion.requeue(node) && robotPriorityQueue.add(node)) nodesAddedToPriorityQueue++;
         }
+        //The nodes expanded since the last report
+        searchProgress.report(nodesDequeued % SearchProgress.REPORT_PERIOD, robotPriorityQueue.size(), -1);
+        searchProgress.reportStorageBytes(visitedTable.getBytesUsed());
         //Display diagnosis of search onto the console
-        if (!robotPriorityQueue.isEmpty())
-            System.out.println("Solution found in " + (float) ((System.currentTimeMillis() - startTime) / 1000) + "s!\nNodes dequeued: " + nodesDequeued + "\nNodes added to priority queue: " + nodesAddedToPriorityQueue);
-        else
-            System.out.println("Solution not found after " + (float) ((System.currentTimeMillis() - startTime) / 1000) + "s:\nNodes dequeued: " + nodesDequeued + "\nNodes added to priority queue: " + nodesAddedToPriorityQueue);
-        System.out.println("Total cost of solution: " + node.getCost());
-        //Decode the solution found to build the robots path (their stack of directions)
-        constructPaths(node, closedList);
-    }
-
-    //This method generates a table containing all possibilities of moves for the robots
-    //For 2 robots, this would be
-    //UP:UP ; UP:DOWN ; UP:LEFT ; UP:RIGHT ; UP:NONE ; DOWN:UP ; DOWN:DOWN ; DOWN:LEFT ; DOWN:RIGHT ; DOWN:NONE ; LEFT:UP ; LEFT:DOWN ; LEFT:LEFT ; etc...
-    private ArrayList<ArrayList<Direction>> moveCombinations() {
-        ArrayList<ArrayList<Direction>> moveCombinations = new ArrayList<>();
-        for (short row = 0; row < Math.pow(directionsList.size(), robotData.getRobotsNumber()); row++) {
-            ArrayList<Direction> rowList = new ArrayList<>();
-            for (short robotIndex = robotData.getRobotsNumber(); robotIndex > 0; robotIndex--) {
-                rowList.add(directionsList.get((int) ((row / Math.pow(directionsList.size(), robotIndex - 1)) % directionsList.size())));
+        if (group.length < robotData.getRobotsNumber()) System.out.println("Group of robots " + Arrays.toString(group) + ":");
+        displayDiagnosis(isSolutionFound, startTime, nodesDequeued, nodesAddedToPriorityQueue, node, visitedTable);
+        if (partialExpansion != null) System.out.println(partialExpansion);
+        if (jointMoves != null) System.out.println(jointMoves);
+        if (heuristic.getDiagnosis() != null) System.out.println(heuristic.getDiagnosis());
+        return isSolutionFound ? visitedTable.extractPaths(node.getIndex(), (short) group.length, isDecomposed) : null;
+    }
+
+    //Creates the children of a node (see setExpansionMode()) and gives each of them, with its parent, to the childHandler.
+    //Returns the number of children accepted by the childHandler. jointMoves is only needed for the JOINT_MOVES mode.
+    int expandNode(Node node, JointMoveEnumerator jointMoves, BiPredicate<Node, Node> childHandler) {
+        if (node.isDecomposed()) return expandNextRobot(node, childHandler);
+        //Every robot moves (JOINT_MOVES)
+        return jointMoves.expandNode(node, childHandler);
+    }
+
+    //Creates the children of a node where only the next robot has moved (OPERATOR_DECOMPOSITION)
+    private int expandNextRobot(Node node, BiPredicate<Node, Node> childHandler) {
+        int nodesAdded = 0;
+        short robotIndex = node.getNextRobotToMove();
+        short nextRobotIndex = (short) ((robotIndex + 1) % node.getRobotsNumber());
+        short location = node.getRobotLocation(robotIndex);
+        //LEFT, UP, RIGHT, DOWN, then NONE (the order of the directions list)
+        for (int direction = 0; direction <= CompiledGrid.DIRECTIONS_NUMBER; direction++) {
+            Node nodeChild;
+            if (direction == CompiledGrid.DIRECTIONS_NUMBER) {
+                //The robot stays where it is: only the next robot to move changes
+                nodeChild = new Node(node.getCost(), node);
+            } else {
+                int newPos = grid.getNeighbour(location, direction);
+                if (newPos == -1 || node.isAnyRobotOnLocation((short) newPos)) continue;
+                nodeChild = new Node(node.getCost() + grid.getCost(newPos), node);
+                nodeChild.setRobotLocation(robotIndex, (short) newPos);
             }
-            moveCombinations.add(rowList);
+            nodeChild.setNextRobotToMove(nextRobotIndex);
+            if (childHandler.test(node, nodeChild)) nodesAdded++;
         }
-        return moveCombinations;
+        return nodesAdded;
     }
 
     /**
@@ -157,6 +458,7 @@ public class SearchField {
      * while the others stay immobile. So on the screen the robots would make each move one after the other.
      *
      * We use a custom PriorityQueue, see more in the comments of the file PriorityQueue.java (in search package)
+     * The open list can also be a bucket queue, see setOpenListType() and the comments of the file RobotBucketQueue.java
      *
      * @param heuristic is an object whose class depends on the heuristic we want to use: Dijkstra, Manhattan, or Euclide.
      *                  Those three classes inherit from the class Heuristic
@@ -169,12 +471,14 @@ public class SearchField {
         //Counters of nodes
         long nodesAddedToPriorityQueue = 0;
         long nodesDequeued = 0;
-        //Tools: PriorityQueue (OpenList), Hashmap (ClosedList)
-        RobotPriorityQueue robotPriorityQueue = new RobotPriorityQueue();
-        HashMap<Integer, Node> closedList = new HashMap<>();
+        //Tools: OpenList, VisitedTable (ClosedList)
+        OpenList robotPriorityQueue = createOpenList();
+        VisitedTable visitedTable = createVisitedTable(PackedLocations.getWordsNumber(robotData.getRobotsNumber()));
+        boolean isSolutionFound = false;
         //Creation of the initial node
         Node node = new Node(robotData.getRobotsList());
         //Storing initial node
+        node.setIndex(visitedTable.add(node, -1));
         robotPriorityQueue.add(node);
         //Creating chronometer
         long startTime = System.currentTimeMillis();
@@ -182,31 +486,28 @@ public class SearchField {
         while (!robotPriorityQueue.isEmpty()) {
             //Retrieving the most optimistic node we found yet
             node = robotPriorityQueue.poll();
+            //Skip the node if a cheaper path to its configuration has been found since it was queued
+            if (node.getCost() > visitedTable.getCost(node.getIndex())) continue;
             nodesDequeued++;
-            //Mark this node to avoid revisiting it
-            closedList.putIfAbsent(node.hashCode(), node);
             //Test if this node is solution
-            if (areRobotsOnGoals(node)) break;
+            if (areRobotsOnGoals(node)) {
+                isSolutionFound = true;
+                break;
+            }
             //Search for neighbour states
             for (short robotIndex = 0; robotIndex < robotData.getRobotsNumber(); robotIndex++) {
                 for (Direction direction : directionsList) {
                     //If the specified robot can move in the specified direction
                     if (canRobotMove(node, robotIndex, direction)) {
                         //Calculate its future location
-                        short newPos = getNewPosWithDir(node.getRobotsList().get(robotIndex).getCurrentLocation(), direction);
+                        short newPos = getNewPosWithDir(node.getRobotLocation(robotIndex), direction);
                         //Create of the child node with the parent child model
-                        Node nodeChild = new Node(node.getCost() + getBlockCost(newPos), node.getRobotsList(), node.hashCode());
-                        //Update the robots list with the move of the robot
+                        Node nodeChild = new Node(node.getCost() + getBlockCost(newPos), node);
+                        //Update the robots locations with the move of the robot
                         nodeChild.moveRobot(robotIndex, direction);
-                        nodeChild.setHeuristic(heuristic.getTotalHeuristic(nodeChild.getListOfRobotsLocations()));
-                        //If already in closedList but the new node is more optimistic, we just replace it
-                        if (closedList.containsKey(nodeChild.hashCode())) {
-                            if (closedList.get(nodeChild.hashCode()).getCost() > nodeChild.getCost()) {
-                                closedList.remove(nodeChild.hashCode());
-                                closedList.put(nodeChild.hashCode(), nodeChild);
-                            }
-                        } else {
-                            //If relevant, add the new node to the priority queue (tests are made internally)
+                        //If relevant, add the new node to the priority queue
+                        if (markVisited(visitedTable, nodeChild, node.getIndex())) {
+                            nodeChild.setHeuristic(heuristic.getTotalHeuristic(nodeChild));
                             if (robotPriorityQueue.add(nodeChild)) nodesAddedToPriorityQueue++;
                         }
                     }
@@ -214,38 +515,71 @@ public class SearchField {
             }
         }
         //Display the diagnosis of the search onto the console
-        if (!robotPriorityQueue.isEmpty())
-            System.out.println("Solution found in " + (float) ((System.currentTimeMillis() - startTime) / 1000) + "s!\nNodes dequeued: " + nodesDequeued + "\nNodes added to priority queue: " + nodesAddedToPriorityQueue);
-        else
-            System.out.println("Solution not found after " + (float) ((System.currentTimeMillis() - startTime) / 1000) + "s:\nNodes dequeued: " + nodesDequeued + "\nNodes added to priority queue: " + nodesAddedToPriorityQueue);
-        System.out.println("Total cost of solution: " + node.getCost());
+        progress.reportStorageBytes(visitedTable.getBytesUsed());
+        displayDiagnosis(isSolutionFound, startTime, nodesDequeued, nodesAddedToPriorityQueue, node, visitedTable);
         //Decode the solution found to build the robots path (their stack of directions)
-        constructPaths(node, closedList);
+        if (isSolutionFound) constructPaths(visitedTable.extractPaths(node.getIndex(), robotData.getRobotsNumber(), false));
+        endSearch();
+    }
+
+    OpenList createOpenList() {
+        if (openListType == OpenListType.BUCKET_QUEUE) return new RobotBucketQueue(tieBreaking);
+        return new RobotPriorityQueue();
+    }
+
+    //keyLength is the number of longs of the packed locations of a configuration (see PackedLocations.getWordsNumber())
+    VisitedTable createVisitedTable(int keyLength) {
+        if (nodeStorageType == NodeStorageType.OFF_HEAP) return new VisitedTable(new OffHeapNodeStorage(keyLength, offHeapMemoryCap));
+        return new VisitedTable(keyLength);
+    }
+
+    //Records a freshly created child node in the visited table, and returns true if it has to be added to the priority queue, i.e.:
+    //      - if its configuration has never been visited
+    //      - or if it has already been visited, but this new node reaches it with a cheaper cost (its path is then replaced)
+    static boolean markVisited(VisitedTable visitedTable, Node nodeChild, int parentIndex) {
+        int index = visitedTable.find(nodeChild);
+        if (index == -1) {
+            nodeChild.setIndex(visitedTable.add(nodeChild, parentIndex));
+            return true;
+        }
+        if (nodeChild.getCost() < visitedTable.getCost(index)) {
+            visitedTable.setCost(index, nodeChild.getCost());
+            visitedTable.setParent(index, parentIndex);
+            nodeChild.setIndex(index);
+            return true;
+        }
+        return false;
+    }
+
+    private void displayDiagnosis(boolean isSolutionFound, long startTime, long nodesDequeued, long nodesAddedToPriorityQueue, Node lastNode, VisitedTable visitedTable) {
+        if (isSolutionFound)
+            System.out.println("Solution found in " + (System.currentTimeMillis() - startTime) / 1000f + "s!\nNodes dequeued: " + nodesDequeued + "\nNodes added to priority queue: " + nodesAddedToPriorityQueue);
+        else
+            System.out.println("Solution not found after " + (System.currentTimeMillis() - startTime) / 1000f + "s:\nNodes dequeued: " + nodesDequeued + "\nNodes added to priority queue: " + nodesAddedToPriorityQueue);
+        System.out.println(visitedTable);
+        if (isSolutionFound) System.out.println("Total cost of solution: " + lastNode.getCost());
     }
 
     public boolean areRobotsOnGoals(Node node) {
-        ArrayList<Robot> nodeRobotsList = node.getRobotsList();
-        for (short robotIndex = 0; robotIndex < nodeRobotsList.size(); robotIndex++) {
-            if (nodeRobotsList.get(robotIndex).getCurrentLocation() != robotData.getGoalLocationForRobot(robotIndex))
+        for (short robotIndex = 0; robotIndex < node.getRobotsNumber(); robotIndex++) {
+            if (node.getRobotLocation(robotIndex) != robotData.getGoalLocationForRobot(robotIndex))
                 return false;
         }
         return true;
     }
 
-    private void constructPaths(Node winNode, HashMap<Integer, Node> closedList) {
-        //We start from the goal node and backtrack until the start node.
-        //Between every parent and child node we retrieve the index of the robot which has to move, and the direction it has to take
-        while (winNode.getPredecessorHashCode() != null) {
-            if (!closedList.containsKey(winNode.getPredecessorHashCode()))
-                System.out.println("Error in SearchField.constructPaths(): Could not find predecessor in hashMap.");
-            for (short robotIndex = 0; robotIndex < robotData.getRobotsNumber(); robotIndex++) {
-                Direction direction = Direction.getDirectionWithValue((short) (winNode.getRobotsList().get(robotIndex).getCurrentLocation() - closedList.get(winNode.getPredecessorHashCode()).getRobotsList().get(robotIndex).getCurrentLocation()));
-                robotData.stackDirectionForRobot(robotIndex, direction);
-            }
-            winNode = closedList.get(winNode.getPredecessorHashCode());
+    public boolean areRobotsOnGoals(Node node, short[] group) {
+        for (short robotIndex = 0; robotIndex < node.getRobotsNumber(); robotIndex++) {
+            if (node.getRobotLocation(robotIndex) != robotData.getGoalLocationForRobot(group[robotIndex]))
+                return false;
         }
-        robotData.setAllRobotsToBeDisplayed(true);
-        isSearching = false;
+        return true;
+    }
+
+    private void constructPaths(short[][] paths) {
+        //The search may run in another thread than the display: the robots path (their stack of directions) is built
+        //by the display itself, before the next move of the robots (see RobotData.offerPlan())
+        robotData.offerPlan(paths);
     }
 
     public boolean updateRobots() {
@@ -271,7 +605,8 @@ public class SearchField {
             columnNumber = levelFile.getColumnNumberFromFile();
             Direction.colNumber = columnNumber;
             matrix = levelFile.getMatrixFromFile();
-            robotData = new RobotData(levelFile.getRobotsKeyLocationsFromFile());
+            grid = new CompiledGrid(matrix, columnNumber);
+            robotData = new RobotData(levelFile.getRobotsKeyLocationsFromFile(), grid);
             //Display the essential level data onto the console
             displayMatrix();
             System.out.println("rows: " + rowNumber);
@@ -301,22 +636,16 @@ public class SearchField {
         if (addNone) directionsList.add(Direction.NONE);
     }
 
-    public static boolean canRobotMove(Node node, short robotIndex, Direction direction) {
-        return canRobotMove(robotIndex, node.getRobotsList(), direction);
+    public boolean canRobotMove(Node node, short robotIndex, Direction direction) {
+        //A robot can move only if the aimed location is walkable and if there is no robot already there (see RobotData.canRobotMove())
+        int newPos = getNeighbour(node.getRobotLocation(robotIndex), direction);
+        return (newPos != -1 && !node.isAnyRobotOnLocation((short) newPos));
     }
 
-    public static boolean canRobotMove(short robotIndex, ArrayList<Robot> robotList, Direction direction) {
-        //A robot can move only if the aimed location is walkable and if there is no robot already there
-        short currentPos = robotList.get(robotIndex).getCurrentLocation();
-        short newPos = getNewPosWithDir(currentPos, direction);
-        boolean noRobotOnPos = true;
-        for (short robIndex = 0; robIndex < robotList.size(); robIndex++) {
-            if (robotList.get(robIndex).getCurrentLocation() == newPos) {
-                noRobotOnPos = false;
-                break;
-            }
-        }
-        return (noRobotOnPos && matrix.get(newPos).isWalkable());
+    //Returns the walkable location reached from this location in this direction, or -1 (always -1 for the NONE direction)
+    private int getNeighbour(short location, Direction direction) {
+        int directionIndex = CompiledGrid.getDirectionIndex(direction);
+        return (directionIndex == -1) ? -1 : grid.getNeighbour(location, directionIndex);
     }
 
     public boolean isSearchingOrDisplaying() {
@@ -325,11 +654,23 @@ public class SearchField {
 
     private void clearSearch() {
         isSearching = true;
-        robotData.reInit();
+        //A search launched by submitSearch() already has its handle (it may even be cancelled already), and its robots were reset
+        //by the thread of the display. The other ones run in the thread of the display (or without any display)
+        if (progress == null || progress.isDone()) {
+            progress = new SearchProgress(nodeBudget, timeBudget);
+            robotData.reInit();
+        }
         directionsList.clear();
     }
 
-    public static short getNewPosWithDir(short currentPosition, Direction direction) {
+    private void endSearch() {
+        String stopReason = progress.getStopReason();
+        if (stopReason != null) System.out.println("Search stopped: " + stopReason);
+        isSearching = false;
+        progress.setDone();
+    }
+
+    public short getNewPosWithDir(short currentPosition, Direction direction) {
         short newPos = (short) (currentPosition + direction.getDirectionValue());
         if (newPos < matrix.size() && newPos >= 0) {
             return newPos;
@@ -384,12 +725,185 @@ public class SearchField {
         return false;
     }
 
+    public OpenListType getOpenListType() {
+        return openListType;
+    }
+
+    public void setOpenListType(OpenListType openListType) {
+        this.openListType = openListType;
+    }
+
+    public NodeStorageType getNodeStorageType() {
+        return nodeStorageType;
+    }
+
+    //OFF_HEAP keeps the visited configurations of the A*, the anytime A* and the parallel A* out of the heap (see OffHeapNodeStorage.java)
+    public void setNodeStorageType(NodeStorageType nodeStorageType) {
+        this.nodeStorageType = nodeStorageType;
+    }
+
+    //Bytes of visited configurations each search can keep out of the heap with OFF_HEAP (each worker of the parallel A* has its own)
+    public void setOffHeapMemoryCap(long memoryCap) {
+        if (memoryCap < 1) {
+            System.out.println("Error in SearchField.setOffHeapMemoryCap(): the cap must be positive -> memoryCap=" + memoryCap);
+            return;
+        }
+        this.offHeapMemoryCap = memoryCap;
+    }
+
+    //When true, AStar() searches the robots group by group (see IndependenceDetection.java)
+    public void setIndependenceDetection(boolean useIndependenceDetection) {
+        this.useIndependenceDetection = useIndependenceDetection;
+    }
+
+    public ExpansionMode getExpansionMode() {
+        return expansionMode;
+    }
+
+    //The IDA*, the parallel A* and the anytime A* can't put a node back into their open list: with them, PARTIAL_EXPANSION creates
+    //every child, like JOINT_MOVES
+    public void setExpansionMode(ExpansionMode expansionMode) {
+        this.expansionMode = expansionMode;
+    }
+
+    //Only used by the BUCKET_QUEUE open list: choose which node is polled first among nodes of equal evaluation
+    public void setTieBreaking(RobotBucketQueue.TieBreaking tieBreaking) {
+        this.tieBreaking = tieBreaking;
+    }
+
+    public boolean isIterativeDeepening() {
+        return useIterativeDeepening;
+    }
+
+    //Replaces the A* by an IDA*, which is slower but whose memory does not grow with the number of nodes explored
+    public void setIterativeDeepening(boolean useIterativeDeepening) {
+        this.useIterativeDeepening = useIterativeDeepening;
+    }
+
+    //Number of configurations remembered by the IDA* (see TranspositionTable.java)
+    public void setTranspositionTableSize(int transpositionTableSize) {
+        if (transpositionTableSize < 1) {
+            System.out.println("Error in SearchField.setTranspositionTableSize(): the size must be positive -> transpositionTableSize=" + transpositionTableSize);
+            return;
+        }
+        this.transpositionTableSize = transpositionTableSize;
+    }
+
+    //Number of steps planned at once by the windowed cooperative A*, which plans again every windowSize steps
+    public void setWindowSize(int windowSize) {
+        if (windowSize < 1) {
+            System.out.println("Error in SearchField.setWindowSize(): the window must contain at least one step -> windowSize=" + windowSize);
+            return;
+        }
+        this.windowSize = windowSize;
+    }
+
+    //When true, AStar() and anytimeAStar() first run the prioritized planning, whose solution bounds their search (see PrioritizedPlanning.java)
+    public void setWarmStart(boolean useWarmStart) {
+        this.useWarmStart = useWarmStart;
+    }
+
+    //Time after which the prioritized planning stops trying new orders of priority
+    public void setPrioritizedPlanningTime(long milliseconds) {
+        if (milliseconds < 0) {
+            System.out.println("Error in SearchField.setPrioritizedPlanningTime(): the time can't be negative -> milliseconds=" + milliseconds);
+            return;
+        }
+        this.prioritizedPlanningTime = milliseconds;
+    }
+
+    //When a directory is given, the A* keeps its nodes in files of this directory instead of the heap (see ExternalMemoryAStar.java).
+    //null goes back to the usual A*.
+    public void setExternalMemory(String directory) {
+        if (directory == null) {
+            externalMemoryDirectory = null;
+            return;
+        }
+        File file = new File(directory);
+        if (!file.isDirectory() || !file.canWrite()) {
+            System.out.println("Error in SearchField.setExternalMemory(): the directory can't be written -> directory=" + directory);
+            return;
+        }
+        externalMemoryDirectory = file;
+    }
+
+    //Bytes of nodes the external-memory A* keeps in the heap before writing them to its files
+    public void setExternalMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 1) {
+            System.out.println("Error in SearchField.setExternalMemoryBudget(): the budget must be positive -> memoryBudget=" + memoryBudget);
+            return;
+        }
+        this.externalMemoryBudget = memoryBudget;
+    }
+
+    //The searches stop after expanding about this number of nodes (see SearchProgress.java)
+    public void setNodeBudget(long nodeBudget) {
+        this.nodeBudget = nodeBudget;
+    }
+
+    //The searches stop after this time, in milliseconds
+    public void setTimeBudget(long milliseconds) {
+        this.timeBudget = milliseconds;
+    }
+
+    //The configurations raced by portfolioSearch(), the best ones first (see Portfolio.getDefaultConfigurations())
+    public void setPortfolioConfigurations(List<Portfolio.Configuration> configurations) {
+        if (configurations.isEmpty()) {
+            System.out.println("Error in SearchField.setPortfolioConfigurations(): the portfolio needs at least one configuration -> configurations=" + configurations);
+            return;
+        }
+        this.portfolioConfigurations = configurations;
+    }
+
+    //The number of configurations searched at the same time by portfolioSearch() (the number of processors by default)
+    public void setPortfolioThreadsNumber(int threadsNumber) {
+        if (threadsNumber < 1) {
+            System.out.println("Error in SearchField.setPortfolioThreadsNumber(): there must be at least one thread -> threadsNumber=" + threadsNumber);
+            return;
+        }
+        this.portfolioThreadsNumber = threadsNumber;
+    }
+
+    public String getHeuristicCacheDirectory() {
+        return heuristicCacheDirectory;
+    }
+
+    //The directory where the Dijkstra heuristics of this level are kept for the next runs, or null to only keep them in memory
+    //(HeuristicCache.DIRECTORY by default, see HeuristicCache.java)
+    public void setHeuristicCacheDirectory(String directory) {
+        this.heuristicCacheDirectory = directory;
+    }
+
+    public int getWorkersNumber() {
+        return workersNumber;
+    }
+
+    //Number of threads sharing the A* search: 1 for the usual search, more for the parallel search (see ParallelAStar.java)
+    public void setWorkersNumber(int workersNumber) {
+        if (workersNumber < 1) {
+            System.out.println("Error in SearchField.setWorkersNumber(): at least one worker is needed -> workersNumber=" + workersNumber);
+            return;
+        }
+        this.workersNumber = workersNumber;
+    }
+
     public RobotData getRobotData() {
         return robotData;
     }
 
-    public byte getBlockCost(short position) {
-        return matrix.get(position).getCost();
+    public int getBlockCost(short position) {
+        return grid.getCost(position);
+    }
+
+    //Total cost of the paths (paths[i][t] is the location of the robot i after t moves): waiting costs nothing
+    public int getPathsCost(short[][] paths) {
+        int cost = 0;
+        for (short[] path : paths) {
+            for (int step = 1; step < path.length; step++) {
+                if (path[step] != path[step - 1]) cost += grid.getCost(path[step]);
+            }
+        }
+        return cost;
     }
 
     public short getPosFromCoords(short row, short column) {
@@ -412,6 +926,10 @@ public class SearchField {
         return matrix;
     }
 
+    public CompiledGrid getGrid() {
+        return grid;
+    }
+
     public short getRowNumber() {
         return rowNumber;
     }
@@ -427,4 +945,18 @@ public class SearchField {
     public ArrayList<Robot> getRobotsList() {
         return robotData.getRobotsList();
     }
+
+    public short[] getAllRobotsIndexes() {
+        short[] robotsIndexes = new short[robotData.getRobotsNumber()];
+        for (short robotIndex = 0; robotIndex < robotsIndexes.length; robotIndex++) robotsIndexes[robotIndex] = robotIndex;
+        return robotsIndexes;
+    }
+
+    public short[] getStartLocations(short[] group) {
+        short[] startLocations = new short[group.length];
+        for (short robotIndex = 0; robotIndex < group.length; robotIndex++) {
+            startLocations[robotIndex] = robotData.getStartLocationForRobot(group[robotIndex]);
+        }
+        return startLocations;
+    }
 }
@@ -0,0 +1,159 @@
+package search;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is the handle of a search, which can run in another thread than the display (see SearchField.submitSearch()):
+ *      - the search publishes its progress every REPORT_PERIOD nodes expanded (see report()): the number of nodes expanded,
+ *        the size of its open list and the best evaluation (cost + heuristic) dequeued yet, which is a lower bound of the
+ *        cost of the solution for the optimal searches. The nodes expanded since the last report are reported at the end
+ *        of the search, so the number of nodes expanded is exact once it is done.
+ *      - the display reads it at every frame, without waiting for the search
+ *      - the search can be cancelled (see cancel()), and it is stopped once its budget of nodes or of time is spent
+ *        (see SearchField.setNodeBudget() and SearchField.setTimeBudget())
+ * The cancellation is cooperative: the searches check isStopRequested() regularly, and give up without a solution.
+ * So the nodes budget is only checked every REPORT_PERIOD nodes, and a search may go a little beyond it.
+ *
+ * The open list of the IDA* is its current path, and its best evaluation is its threshold.
+ * The workers of the parallel A* only report the nodes they expand: the size of the open list and the evaluation are then unknown (-1).
+ * The prioritized planning and the windowed cooperative A* only report the nodes of their searches at their end.
+ *
+ * The memory of the search is reported at its end, for the capacity runs (see BatchSolver.java):
+ *      - the bytes allocated on the heap by the threads of the search (the racers of the portfolio, the workers of the parallel A*)
+ *      - the bytes of the biggest visited table (see VisitedTable.getBytesUsed()), on the heap or off the heap
+ */
+
+public class SearchProgress {
+
+    static final int REPORT_PERIOD = 1 << 10;
+
+    private final long nodeBudget;
+    private final long timeBudget;
+    private final long startTime;
+    private final AtomicLong nodesExpanded = new AtomicLong();
+    private final AtomicLong bytesAllocated = new AtomicLong();
+    private final AtomicLong storageBytes = new AtomicLong();
+    private volatile int openListSize = -1;
+    private volatile int bestEvaluation = -1;
+    private volatile boolean isCancelled;
+    private volatile boolean isDone;
+    private volatile Future<?> future;
+
+    /**
+     * @param nodeBudget is the number of nodes after which the search is stopped
+     * @param timeBudget is the time (in milliseconds) after which the search is stopped
+     */
+    SearchProgress(long nodeBudget, long timeBudget) {
+        this.nodeBudget = nodeBudget;
+        this.timeBudget = timeBudget;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Called by the searches with the nodes expanded since their last report
+     * (-1 for the size of the open list or for the evaluation when they are unknown)
+     *
+     * @return true if the search has to stop
+     */
+    boolean report(long newNodesExpanded, int openListSize, int bestEvaluation) {
+        nodesExpanded.addAndGet(newNodesExpanded);
+        if (openListSize != -1) this.openListSize = openListSize;
+        if (bestEvaluation != -1) this.bestEvaluation = bestEvaluation;
+        return isStopRequested();
+    }
+
+    //The bytes allocated by a thread of the search, measured with getThreadAllocatedBytes()
+    void reportBytesAllocated(long newBytesAllocated) {
+        bytesAllocated.addAndGet(newBytesAllocated);
+    }
+
+    //Only the biggest visited table is kept: the tables of the groups of robots are searched one after the other
+    void reportStorageBytes(long tableBytes) {
+        storageBytes.accumulateAndGet(tableBytes, Math::max);
+    }
+
+    //The bytes allocated on the heap by the current thread since it started (0 if the JVM can't measure it)
+    static long getThreadAllocatedBytes() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) return 0;
+        return Math.max(0, ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId()));
+    }
+
+    boolean isStopRequested() {
+        return isCancelled || nodesExpanded.get() > nodeBudget || getElapsedTime() > timeBudget;
+    }
+
+    //The reason why the search stopped, or null if it did not stop before its end
+    public String getStopReason() {
+        if (isCancelled) return "cancelled";
+        if (nodesExpanded.get() > nodeBudget) return "node budget of " + nodeBudget + " spent";
+        if (getElapsedTime() > timeBudget) return "time budget of " + timeBudget + "ms spent";
+        return null;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    void setDone() {
+        isDone = true;
+    }
+
+    //Asks the search to stop as soon as possible
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    //Waits for the end of the search (only for a search launched by SearchField.submitSearch())
+    public void awaitEnd() {
+        if (future == null) return;
+        try {
+            future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    public boolean isDone() {
+        return isDone;
+    }
+
+    public long getNodesExpanded() {
+        return nodesExpanded.get();
+    }
+
+    public long getBytesAllocated() {
+        return bytesAllocated.get();
+    }
+
+    public long getStorageBytes() {
+        return storageBytes.get();
+    }
+
+    public int getOpenListSize() {
+        return openListSize;
+    }
+
+    public int getBestEvaluation() {
+        return bestEvaluation;
+    }
+
+    public long getElapsedTime() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    @Override
+    public String toString() {
+        return "expanded: " + nodesExpanded.get()
+                + (openListSize == -1 ? "" : ", open: " + openListSize)
+                + (bestEvaluation == -1 ? "" : ", best f: " + bestEvaluation)
+                + ", " + getElapsedTime() / 100 / 10f + "s";
+    }
+}
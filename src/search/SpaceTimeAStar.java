@@ -0,0 +1,252 @@
+package search;
+
+import field.CompiledGrid;
+import search.heuristics.Heuristic;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * This class is an A* search for a small group of robots (most of the time a single one), in which a state is the locations
+ * of the robots AND a step (the number of moves done). The robots which are not in the group are ignored, except through the
+ * constraints given (see SpaceTimeConstraints.java), which forbid some locations at some steps. So, unlike in the A* of SearchField,
+ * waiting somewhere (NONE direction) can be useful even for a single robot.
+ * The robots of the group move like in the A* of SearchField: one after the other, by order of index.
+ *
+ * Waiting costs nothing, so without care there would be infinitely many states of equal evaluation: (locations, step),
+ * (locations, step + 1), etc. But after the last constrained step, the step does not change anything anymore,
+ * so every state after it is stored with this same step in the VisitedTable, and the search always ends.
+ *
+ * The paths of the other robots can also be given. They are not constraints: the paths found are still the cheapest ones,
+ * but among the cheapest paths, the ones which get in the way of the other robots the least often are chosen (see Conflict.isInConflict()).
+ * This matters a lot, because waiting is free: there are often many paths of equal cost, and a bad choice among them creates
+ * conflicts which could have been avoided. To count the conflicts the robots have once on their goals, the search only ends
+ * when the paths of the other robots are over (the waits on the goals at the end of the paths are then removed).
+ *
+ * Among states of equal evaluation, the one with the fewest conflicts is expanded first, then the one with the highest cost,
+ * then the one with the smallest step, so that the paths found do not contain useless waits.
+ *
+ * An object of this class can be used for several searches, but not for two searches at the same time.
+ */
+
+public class SpaceTimeAStar {
+
+    //Moves tried for each robot: NONE (-1), then the directions of the compiled grid (see CompiledGrid.java)
+    private static final int NONE = -1;
+    private static final int[] MOVES = {NONE, CompiledGrid.UP, CompiledGrid.DOWN, CompiledGrid.LEFT, CompiledGrid.RIGHT};
+
+    private final SearchField searchField;
+    private final Heuristic heuristic;
+    private long nodesDequeued;
+
+    //Data of the current search
+    private short[] group;
+    private SpaceTimeConstraints constraints;
+    private short[][] otherPaths;
+    private int lastRelevantStep;
+    private VisitedTable visitedTable;
+    private PriorityQueue<SpaceTimeNode> openList;
+    //Number of conflicts of the best path found to each entry of the visited table
+    private int[] conflictsNumbers;
+    private long[] key;
+
+    public SpaceTimeAStar(SearchField searchField, Heuristic heuristic) {
+        this.searchField = searchField;
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * @return the locations of the robot after each move (path[0] is its start location and the last one its goal),
+     * or null if no path respects the constraints
+     */
+    public short[] findPath(short robotIndex, SpaceTimeConstraints constraints) {
+        short[][] paths = findPaths(new short[]{robotIndex}, constraints, null);
+        return paths == null ? null : paths[0];
+    }
+
+    /**
+     * @param group      contains the indexes of the robots of the group, in increasing order
+     * @param otherPaths contains the current paths of all robots (the paths of the robots of the group are ignored), or null
+     * @return the paths of the robots of the group (paths[i][t] is the location of the robot group[i] after t moves),
+     * or null if no paths respect the constraints
+     */
+    public short[][] findPaths(short[] group, SpaceTimeConstraints constraints, short[][] otherPaths) {
+        this.group = group;
+        this.constraints = constraints;
+        this.otherPaths = otherPaths;
+        //After this step, every state with the same locations is the same state
+        lastRelevantStep = 0;
+        for (short robotIndex : group) lastRelevantStep = Math.max(lastRelevantStep, constraints.getLastForbiddenStep(robotIndex) + 1);
+        //The conflicts with the other robots can change until they are all on their goals
+        if (otherPaths != null) {
+            for (short robotIndex = 0; robotIndex < otherPaths.length; robotIndex++) {
+                if (otherPaths[robotIndex] != null && !isInGroup(robotIndex))
+                    lastRelevantStep = Math.max(lastRelevantStep, otherPaths[robotIndex].length);
+            }
+        }
+        //Key of a state: the locations of the robots, then the step, packed as the location of one more robot (see PackedLocations.java)
+        key = new long[PackedLocations.getWordsNumber(group.length + 1)];
+        visitedTable = new VisitedTable(key.length);
+        openList = new PriorityQueue<>();
+        conflictsNumbers = new int[64];
+
+        short[] locations = new short[group.length];
+        for (short robotIndex = 0; robotIndex < group.length; robotIndex++)
+            locations[robotIndex] = searchField.getRobotData().getStartLocationForRobot(group[robotIndex]);
+        setKey(locations, 0);
+        int startIndex = visitedTable.add(key, 0, PackedLocations.hash(key, 0, key.length), 0, -1);
+        openList.add(new SpaceTimeNode(startIndex, 0, 0, 0, getHeuristic(locations)));
+        while (!openList.isEmpty()) {
+            SpaceTimeNode node = openList.poll();
+            if (node.cost > visitedTable.getCost(node.index) || node.conflictsNumber > conflictsNumbers[node.index]) continue;
+            nodesDequeued++;
+            for (short robotIndex = 0; robotIndex < group.length; robotIndex++)
+                locations[robotIndex] = visitedTable.getRobotLocation(node.index, robotIndex);
+            if (isGoal(locations, node.step)) return extractPaths(node.index, node.step);
+            expand(node, 0, locations, node.cost, node.conflictsNumber);
+        }
+        return null;
+    }
+
+    //The robots stay on their goals at the end of their paths: they must be allowed to stay there forever
+    private boolean isGoal(short[] locations, int step) {
+        if (step < lastRelevantStep) return false;
+        for (short robotIndex = 0; robotIndex < group.length; robotIndex++) {
+            short goalLocation = searchField.getRobotData().getGoalLocationForRobot(group[robotIndex]);
+            if (locations[robotIndex] != goalLocation) return false;
+            if (step <= constraints.getLastForbiddenStep(group[robotIndex], goalLocation)) return false;
+        }
+        return true;
+    }
+
+    //Gives its move to the robot number robotIndex in the group, then to the next ones, and records the children once every robot has moved
+    private void expand(SpaceTimeNode node, int robotIndex, short[] locations, int cost, int conflictsNumber) {
+        if (robotIndex == group.length) {
+            addChild(node, locations, cost, conflictsNumber);
+            return;
+        }
+        int newStep = node.step + 1;
+        short currentLocation = locations[robotIndex];
+        CompiledGrid grid = searchField.getGrid();
+        for (int move : MOVES) {
+            short newLocation = currentLocation;
+            if (move != NONE) {
+                int neighbour = grid.getNeighbour(currentLocation, move);
+                if (neighbour == -1) continue;
+                newLocation = (short) neighbour;
+                //The robots before this one have already moved, the ones after it have not moved yet
+                if (isLocationOccupied(locations, newLocation)) continue;
+            }
+            if (constraints.isForbidden(group[robotIndex], newLocation, newStep)) continue;
+            locations[robotIndex] = newLocation;
+            expand(node, robotIndex + 1, locations,
+                    cost + (move == NONE ? 0 : grid.getCost(newLocation)),
+                    conflictsNumber + countConflicts(group[robotIndex], newLocation, newStep));
+            locations[robotIndex] = currentLocation;
+        }
+    }
+
+    private void addChild(SpaceTimeNode node, short[] locations, int cost, int conflictsNumber) {
+        int newStep = node.step + 1;
+        setKey(locations, Math.min(newStep, lastRelevantStep));
+        int hash = PackedLocations.hash(key, 0, key.length);
+        int index = visitedTable.find(key, 0, hash);
+        if (index == -1) {
+            index = visitedTable.add(key, 0, hash, cost, node.index);
+            if (index == conflictsNumbers.length) conflictsNumbers = Arrays.copyOf(conflictsNumbers, index * 2);
+        } else if (cost < visitedTable.getCost(index) || (cost == visitedTable.getCost(index) && conflictsNumber < conflictsNumbers[index])) {
+            visitedTable.setCost(index, cost);
+            visitedTable.setParent(index, node.index);
+        } else {
+            return;
+        }
+        conflictsNumbers[index] = conflictsNumber;
+        openList.add(new SpaceTimeNode(index, newStep, cost, conflictsNumber, cost + getHeuristic(locations)));
+    }
+
+    private static boolean isLocationOccupied(short[] locations, short location) {
+        for (short robotLocation : locations) {
+            if (robotLocation == location) return true;
+        }
+        return false;
+    }
+
+    private boolean isInGroup(short robotIndex) {
+        for (short groupRobotIndex : group) {
+            if (groupRobotIndex == robotIndex) return true;
+        }
+        return false;
+    }
+
+    private int countConflicts(short robotIndex, short location, int step) {
+        if (otherPaths == null) return 0;
+        int conflictsNumber = 0;
+        for (short otherRobotIndex = 0; otherRobotIndex < otherPaths.length; otherRobotIndex++) {
+            if (otherPaths[otherRobotIndex] == null || isInGroup(otherRobotIndex)) continue;
+            if (Conflict.isInConflict(robotIndex, location, step, otherRobotIndex, otherPaths[otherRobotIndex])) conflictsNumber++;
+        }
+        return conflictsNumber;
+    }
+
+    private float getHeuristic(short[] locations) {
+        float totalHeuristic = 0;
+        for (short robotIndex = 0; robotIndex < group.length; robotIndex++)
+            totalHeuristic += heuristic.getHeuristicAtPos(locations[robotIndex], group[robotIndex]);
+        return totalHeuristic;
+    }
+
+    private void setKey(short[] locations, int step) {
+        for (short robotIndex = 0; robotIndex < locations.length; robotIndex++)
+            PackedLocations.setLocation(key, 0, robotIndex, locations[robotIndex]);
+        PackedLocations.setLocation(key, 0, locations.length, (short) step);
+    }
+
+    //Every parent link is one move, so the paths are as long as the chain of parents.
+    //The waits on the goal at the end of each path are then removed, as long as the robot is allowed to stop there.
+    private short[][] extractPaths(int goalIndex, int goalStep) {
+        short[][] paths = new short[group.length][goalStep + 1];
+        int index = goalIndex;
+        for (int step = goalStep; step >= 0; step--) {
+            for (short robotIndex = 0; robotIndex < group.length; robotIndex++)
+                paths[robotIndex][step] = visitedTable.getRobotLocation(index, robotIndex);
+            index = visitedTable.getParent(index);
+        }
+        for (short robotIndex = 0; robotIndex < group.length; robotIndex++) {
+            short[] path = paths[robotIndex];
+            int lastGoalForbiddenStep = constraints.getLastForbiddenStep(group[robotIndex], path[path.length - 1]);
+            int length = path.length;
+            while (length > 1 && path[length - 2] == path[length - 1] && length - 2 > lastGoalForbiddenStep) length--;
+            paths[robotIndex] = Arrays.copyOf(path, length);
+        }
+        return paths;
+    }
+
+    public long getNodesDequeued() {
+        return nodesDequeued;
+    }
+
+    private static class SpaceTimeNode implements Comparable<SpaceTimeNode> {
+
+        private final int index;
+        private final int step;
+        private final int cost;
+        private final int conflictsNumber;
+        private final float evaluation;
+
+        private SpaceTimeNode(int index, int step, int cost, int conflictsNumber, float evaluation) {
+            this.index = index;
+            this.step = step;
+            this.cost = cost;
+            this.conflictsNumber = conflictsNumber;
+            this.evaluation = evaluation;
+        }
+
+        @Override
+        public int compareTo(SpaceTimeNode node) {
+            if (evaluation != node.evaluation) return Float.compare(evaluation, node.evaluation);
+            if (conflictsNumber != node.conflictsNumber) return Integer.compare(conflictsNumber, node.conflictsNumber);
+            if (cost != node.cost) return Integer.compare(node.cost, cost);
+            return Integer.compare(step, node.step);
+        }
+    }
+}
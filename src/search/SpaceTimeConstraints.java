@@ -0,0 +1,21 @@
+package search;
+
+/**
+ * This interface describes the locations a robot is not allowed to occupy at some steps of its path.
+ * It is used by SpaceTimeAStar, which searches the path of a single robot while the paths of the other robots are handled elsewhere
+ * (for example by the constraints of the Conflict-Based Search).
+ */
+
+public interface SpaceTimeConstraints {
+
+    //True if the robot can't be on this location after this number of moves
+    boolean isForbidden(short robotIndex, short location, int step);
+
+    //Last step at which the location is forbidden for the robot, or -1 if it is never forbidden.
+    //A robot can only stop on its goal after this step, because it stays on its goal once its path is over.
+    int getLastForbiddenStep(short robotIndex, short location);
+
+    //Last step at which any location is forbidden for the robot, or -1 if there is no constraint at all.
+    //After this step, the step does not matter anymore: only the location of the robot does.
+    int getLastForbiddenStep(short robotIndex);
+}
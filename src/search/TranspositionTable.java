@@ -0,0 +1,82 @@
+package search;
+
+import java.util.Arrays;
+
+/**
+ * This class is a fixed-size table of configurations of the robots, used by the IDA* (see IterativeDeepeningAStar.java)
+ * to remember the lowest cost at which a configuration has been reached during the current iteration.
+ *
+ * Unlike the VisitedTable, it never grows: every configuration has a single slot, chosen by its hashcode, and a new configuration
+ * simply replaces the one which was in its slot. So the table may forget configurations, which only means that the IDA* will
+ * explore them again: the search is still exact, and its memory does not depend on the number of configurations explored.
+ */
+
+public class TranspositionTable {
+
+    private final int keyLength;
+    private final int mask;
+    private final long[] keys;
+    //Cost of the configuration of each slot, or -1 if the slot is empty
+    private final int[] costs;
+
+    //Statistics
+    private long hitsNumber;
+    private long replacementsNumber;
+
+    //The size is rounded up to a power of two
+    public TranspositionTable(int size, int keyLength) {
+        int capacity = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+        this.keyLength = keyLength;
+        mask = capacity - 1;
+        keys = new long[capacity * keyLength];
+        costs = new int[capacity];
+        clear();
+    }
+
+    /**
+     * Records that the configuration of the node has been reached with its cost.
+     *
+     * @return false if this configuration had already been reached with a cost lower or equal (the node does not need to be explored),
+     * true otherwise
+     */
+    public boolean record(Node node) {
+        int slot = node.hashCode() & mask;
+        long[] key = node.getPackedLocations();
+        if (costs[slot] != -1 && PackedLocations.equals(key, 0, keys, slot * keyLength, keyLength)) {
+            if (costs[slot] <= node.getCost()) {
+                hitsNumber++;
+                return false;
+            }
+        } else if (costs[slot] != -1) {
+            replacementsNumber++;
+        }
+        System.arraycopy(key, 0, keys, slot * keyLength, keyLength);
+        costs[slot] = node.getCost();
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(costs, -1);
+    }
+
+    public int getCapacity() {
+        return costs.length;
+    }
+
+    public long getHitsNumber() {
+        return hitsNumber;
+    }
+
+    public long getReplacementsNumber() {
+        return replacementsNumber;
+    }
+
+    @Override
+    public String toString() {
+        return "TranspositionTable{" +
+                "capacity=" + getCapacity() +
+                ", hits=" + hitsNumber +
+                ", replacements=" + replacementsNumber +
+                '}';
+    }
+}
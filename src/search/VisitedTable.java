@@ -0,0 +1,206 @@
+package search;
+
+/**
+ * This class is the list of visited configurations of the A* search (it replaces the HashMap<Integer, Node> closed list).
+ *
+ * The HashMap was keyed on the 32 bits hashcode of the nodes, so two different configurations with the same hashcode
+ * were considered as the same node (and one of them was lost). Here the key is the whole configuration, i.e. the packed
+ * locations of the robots (see PackedLocations.java), so two configurations can never be mixed up.
+ *
+ * Every visited configuration is an entry, identified by its index (0, 1, 2, ... in order of insertion). An entry stores:
+ *      - the packed locations of the robots (the key)
+ *      - the cost of the best path found yet to reach this configuration
+ *      - the index of the entry it has been reached from (its parent), or -1 for the initial configuration
+ * Entries are never moved nor removed, so an index stays valid for the whole search and can be stored in other entries or nodes.
+ * They are kept by a NodeStorage, on the heap or out of it (see NodeStorage.java).
+ * So the paths of the solution are rebuilt by following the parents indexes through the storage (see extractPaths()).
+ *
+ * To find a configuration, we use an open addressing table (linear probing) of entries indexes.
+ * When this table is too full, a table twice bigger is allocated and the entries are moved a few at a time at each insertion,
+ * instead of all at once: the search never stops for a long rehash. While the move is in progress, both tables are looked up.
+ *
+ * The table counts the number of slots read for each lookup, which gives the average and maximal probe lengths.
+ */
+
+public class VisitedTable {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final float MAX_LOAD_FACTOR = 0.5f;
+    //Number of slots of the old table moved at each insertion while the table is growing
+    private static final int MIGRATION_STEP = 4;
+
+    private final NodeStorage storage;
+
+    //Slots contain the index of an entry + 1 (0 means empty)
+    private int[] slots;
+    private int[] oldSlots;
+    private int migrationCursor;
+
+    //Statistics
+    private long lookupsNumber;
+    private long probesNumber;
+    private int maxProbeLength;
+
+    //The entries are stored on the heap
+    public VisitedTable(int keyLength) {
+        this(new HeapNodeStorage(keyLength));
+    }
+
+    public VisitedTable(NodeStorage storage) {
+        this.storage = storage;
+        slots = new int[INITIAL_CAPACITY];
+    }
+
+    public int find(Node node) {
+        return find(node.getPackedLocations(), 0, node.hashCode());
+    }
+
+    //Returns the index of the entry whose key is equal to the key given, or -1 if this configuration was never visited
+    public int find(long[] key, int offset, int hash) {
+        int index = findInSlots(slots, key, offset, hash);
+        //Entries which are not moved yet are still in the old table
+        if (index == -1 && oldSlots != null) index = findInSlots(oldSlots, key, offset, hash);
+        return index;
+    }
+
+    public int add(Node node, int parentIndex) {
+        return add(node.getPackedLocations(), 0, node.hashCode(), node.getCost(), parentIndex);
+    }
+
+    //Adds a new entry and returns its index. The key must not be already in the table (see find()).
+    public int add(long[] key, int offset, int hash, int cost, int parentIndex) {
+        if (oldSlots != null) migrate(MIGRATION_STEP);
+        else if (storage.size() + 1 > slots.length * MAX_LOAD_FACTOR) startGrowing();
+
+        int index = storage.add(key, offset, hash, cost, parentIndex);
+        insertInSlots(slots, index, hash);
+        return index;
+    }
+
+    private int findInSlots(int[] table, long[] key, int offset, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        int probeLength = 1;
+        int index = -1;
+        while (table[slot] != 0) {
+            int candidate = table[slot] - 1;
+            //Comparing the hashcodes first avoids reading the keys of most of the entries met
+            if (storage.getHash(candidate) == hash && storage.isKeyEqual(candidate, key, offset)) {
+                index = candidate;
+                break;
+            }
+            slot = (slot + 1) & mask;
+            probeLength++;
+        }
+        lookupsNumber++;
+        probesNumber += probeLength;
+        if (probeLength > maxProbeLength) maxProbeLength = probeLength;
+        return index;
+    }
+
+    private static void insertInSlots(int[] table, int index, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) slot = (slot + 1) & mask;
+        table[slot] = index + 1;
+    }
+
+    private void startGrowing() {
+        oldSlots = slots;
+        slots = new int[oldSlots.length * 2];
+        migrationCursor = 0;
+    }
+
+    //Moves a few slots of the old table into the new one. The old table is not modified, so it can still be looked up.
+    private void migrate(int slotsNumber) {
+        int end = Math.min(migrationCursor + slotsNumber, oldSlots.length);
+        for (; migrationCursor < end; migrationCursor++) {
+            int slotContent = oldSlots[migrationCursor];
+            if (slotContent != 0) insertInSlots(slots, slotContent - 1, storage.getHash(slotContent - 1));
+        }
+        if (migrationCursor == oldSlots.length) oldSlots = null;
+    }
+
+    public int getCost(int index) {
+        return storage.getCost(index);
+    }
+
+    public void setCost(int index, int cost) {
+        storage.setCost(index, cost);
+    }
+
+    public int getParent(int index) {
+        return storage.getParent(index);
+    }
+
+    public void setParent(int index, int parentIndex) {
+        storage.setParent(index, parentIndex);
+    }
+
+    /**
+     * The path which reached an entry is the chain of its parents, up to the entry of the initial configuration (whose parent is -1).
+     * A parent is only replaced by a cheaper one, so the chain never loops, and it is only made of indexes: it never depends on
+     * hashcodes, and it is always complete.
+     * With the operator decomposition (the next robot to move is stored after the locations), intermediate states, where only
+     * some robots have moved, are skipped.
+     *
+     * @return the paths of the robots (paths[i][t] is the location of the robot i after t moves) which end on this entry
+     */
+    public short[][] extractPaths(int lastIndex, short robotsNumber, boolean isDecomposed) {
+        //First count the steps, to know the length of the paths
+        int stepsNumber = 0;
+        for (int index = lastIndex; index != -1; index = getParent(index)) {
+            if (!isDecomposed || getRobotLocation(index, robotsNumber) == 0) stepsNumber++;
+        }
+        short[][] paths = new short[robotsNumber][stepsNumber];
+        for (int index = lastIndex; index != -1; index = getParent(index)) {
+            if (isDecomposed && getRobotLocation(index, robotsNumber) != 0) continue;
+            stepsNumber--;
+            for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+                paths[robotIndex][stepsNumber] = getRobotLocation(index, robotIndex);
+            }
+        }
+        return paths;
+    }
+
+    public short getRobotLocation(int index, short robotIndex) {
+        return storage.getRobotLocation(index, robotIndex);
+    }
+
+    public int size() {
+        return storage.size();
+    }
+
+    //The memory of the entries and of the slots, in bytes
+    public long getBytesUsed() {
+        return storage.getBytesUsed() + (long) Integer.BYTES * (slots.length + (oldSlots == null ? 0 : oldSlots.length));
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public float getLoadFactor() {
+        return (float) size() / slots.length;
+    }
+
+    public float getAverageProbeLength() {
+        return lookupsNumber == 0 ? 0 : (float) probesNumber / lookupsNumber;
+    }
+
+    public int getMaxProbeLength() {
+        return maxProbeLength;
+    }
+
+    @Override
+    public String toString() {
+        return "VisitedTable{" +
+                "size=" + size() +
+                ", capacity=" + getCapacity() +
+                ", load factor=" + getLoadFactor() +
+                ", average probe length=" + getAverageProbeLength() +
+                ", max probe length=" + maxProbeLength +
+                ", bytes used=" + getBytesUsed() + " (" + storage + ")" +
+                '}';
+    }
+}
@@ -0,0 +1,353 @@
+package search;
+
+import field.CompiledGrid;
+import search.heuristics.Heuristic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * This class is another search engine, much faster than the others but not optimal: the Windowed Hierarchical Cooperative A*
+ * (see SearchField.windowedCooperativeAStar()). It is meant for levels with many robots, where the joint searches can't end.
+ *
+ * The robots are planned one after the other, each one alone, in space-time (a state is a location AND a step):
+ *      - A reservation table holds, for each step of the window and each location, the robot which is there. A robot
+ *        only plans moves which can't get in the way of the robots already planned (see isFree()), then reserves its own path.
+ *      - A robot is only planned for the next windowSize steps. Its search ends at the last step of the window, where
+ *        the cost left to its goal is the true one, read from the heuristic fields (the Dijkstra heuristic, computed
+ *        ignoring the other robots): this is the "hierarchical" part, the window search is guided by the exact distances.
+ *      - Once the window is planned, the robots follow it, and the next window is planned from where they are, every windowSize steps,
+ *        until every robot is on its goal.
+ * Each search has at most (windowSize + 1) * (number of locations) states, so even with 50 robots a window takes a few milliseconds.
+ *
+ * Robots move one after the other, by order of index, like in the other searches: a robot can enter a location another robot is
+ * just leaving only if the other robot moves before it. The reservations follow this rule, so the paths found can always be followed.
+ *
+ * The order in which the robots are planned matters: the first ones take their best paths, the last ones go around them.
+ *      - The robots far from their goals are planned first, the robots already on their goals last (they step aside if needed).
+ *      - The priorities are kept from one window to the next, so that two robots meeting in a corridor don't push each other
+ *        back in turns: the robot of lower priority always steps aside.
+ *      - A robot which has no move left in a window (e.g. stuck in a dead end by the reservations) is given the highest priority,
+ *        and the window is planned again.
+ * The search is not complete: the exact distances ignore the other robots, so when two robots have to cross each other in a long
+ * corridor, they may go back and forth forever (level9 is such a level). The search stops when the robots come back to the
+ * configuration they had at the start of a previous window, or after MAX_STEPS_PER_LOCATION steps per location of the level.
+ */
+
+public class WindowedCooperativeAStar {
+
+    private static final int MAX_STEPS_PER_LOCATION = 4;
+    //Distance given to the locations from which a goal can't be reached
+    private static final int UNREACHABLE = Integer.MAX_VALUE / 2;
+    private static final int NONE = CompiledGrid.DIRECTIONS_NUMBER;
+
+    private final SearchField searchField;
+    private final CompiledGrid grid;
+    private final short robotsNumber;
+    private final int locationsNumber;
+    private final int windowSize;
+    //True cost from each location to the goal of each robot (distances[robot][location])
+    private final int[][] distances;
+    //The robots of highest priority are planned first (see getPlanningOrder())
+    private final int[] priorities;
+    private int highestPriority;
+
+    //Robot reserving each location at each step of the window, plus one (0 is free): reservations[step * locationsNumber + location]
+    private final int[] reservations;
+
+    //Data of the search of a robot in the window, indexed by state (step * locationsNumber + location). A state is only valid
+    //if its stamp is the current one, so nothing has to be cleared between two searches.
+    private final int[] stateStamps;
+    private final int[] stateCosts;
+    private final int[] stateParents;
+    private final boolean[] isStateClosed;
+    private int currentStamp;
+    private int[] currentDistances;
+    private int[] heap;
+    private int heapSize;
+
+    //Statistics
+    private long windowsPlanned;
+    private long searchesNumber;
+    private long statesExpanded;
+    private long replansNumber;
+
+    public WindowedCooperativeAStar(SearchField searchField, Heuristic heuristic, int windowSize) {
+        this.searchField = searchField;
+        this.grid = searchField.getGrid();
+        this.robotsNumber = searchField.getRobotData().getRobotsNumber();
+        this.locationsNumber = grid.getLocationsNumber();
+        this.windowSize = windowSize;
+        //The heuristic fields are read once, into primitive arrays
+        distances = new int[robotsNumber][locationsNumber];
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            for (short location = 0; location < locationsNumber; location++) {
+                float distance = grid.isWalkable(location) ? heuristic.getHeuristicAtPos(location, robotIndex) : Float.MAX_VALUE;
+                distances[robotIndex][location] = (distance >= UNREACHABLE) ? UNREACHABLE : Math.round(distance);
+            }
+        }
+        priorities = new int[robotsNumber];
+        int statesNumber = (windowSize + 1) * locationsNumber;
+        reservations = new int[statesNumber];
+        stateStamps = new int[statesNumber];
+        stateCosts = new int[statesNumber];
+        stateParents = new int[statesNumber];
+        isStateClosed = new boolean[statesNumber];
+        heap = new int[64];
+    }
+
+    /**
+     * @return the paths of all robots (paths[i][t] is the location of the robot i after t moves), or null if no solution was found
+     */
+    public short[][] findPaths() {
+        long startTime = System.currentTimeMillis();
+        short[] locations = searchField.getStartLocations(searchField.getAllRobotsIndexes());
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            if (distances[robotIndex][locations[robotIndex]] == UNREACHABLE) {
+                System.out.println("Error in WindowedCooperativeAStar.findPaths(): the goal of a robot can't be reached -> robotIndex=" + robotIndex);
+                return null;
+            }
+        }
+        //Locations of every robot at every step planned yet
+        ArrayList<short[]> steps = new ArrayList<>();
+        steps.add(locations.clone());
+        short[][] windowPaths = new short[robotsNumber][windowSize + 1];
+        initializePriorities(locations);
+        int maxSteps = MAX_STEPS_PER_LOCATION * locationsNumber;
+
+        //Configurations of the robots at the start of the windows planned with the current priorities: if one comes back,
+        //the robots would go round in circles forever
+        HashSet<String> windowStarts = new HashSet<>();
+        boolean isSolutionFound = areRobotsOnGoals(locations);
+        while (!isSolutionFound && steps.size() <= maxSteps && !searchField.isStopRequested()) {
+            int lastHighestPriority = highestPriority;
+            if (!windowStarts.add(Arrays.toString(locations))) {
+                System.out.println("Error in WindowedCooperativeAStar.findPaths(): the robots are going round in circles -> step=" + (steps.size() - 1));
+                break;
+            }
+            if (!planWindow(locations, getPlanningOrder(locations), windowPaths)) break;
+            if (highestPriority != lastHighestPriority) windowStarts.clear();
+            windowsPlanned++;
+            //The robots follow the whole window, then the next one is planned from where they are
+            for (int step = 1; step <= windowSize && !isSolutionFound; step++) {
+                for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) locations[robotIndex] = windowPaths[robotIndex][step];
+                steps.add(locations.clone());
+                isSolutionFound = areRobotsOnGoals(locations);
+            }
+        }
+
+        short[][] paths = isSolutionFound ? buildPaths(steps) : null;
+        displayDiagnosis(paths, startTime, steps.size() - 1);
+        return paths;
+    }
+
+    //At first, the robots far from their goals have the highest priorities
+    private void initializePriorities(short[] locations) {
+        Short[] order = new Short[robotsNumber];
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) order[robotIndex] = robotIndex;
+        Arrays.sort(order, (Short robot1, Short robot2) -> Integer.compare(distances[robot2][locations[robot2]], distances[robot1][locations[robot1]]));
+        for (int rank = 0; rank < robotsNumber; rank++) priorities[order[rank]] = robotsNumber - rank;
+        highestPriority = robotsNumber;
+    }
+
+    //The robots by decreasing priority, except the robots already on their goals which come last
+    private short[] getPlanningOrder(short[] locations) {
+        Short[] order = new Short[robotsNumber];
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) order[robotIndex] = robotIndex;
+        Arrays.sort(order, (Short robot1, Short robot2) -> {
+            boolean isOnGoal1 = distances[robot1][locations[robot1]] == 0;
+            boolean isOnGoal2 = distances[robot2][locations[robot2]] == 0;
+            if (isOnGoal1 != isOnGoal2) return isOnGoal1 ? 1 : -1;
+            return Integer.compare(priorities[robot2], priorities[robot1]);
+        });
+        short[] planningOrder = new short[robotsNumber];
+        for (short rank = 0; rank < robotsNumber; rank++) planningOrder[rank] = order[rank];
+        return planningOrder;
+    }
+
+    /**
+     * Plans every robot in the window, in the given order, and writes their paths in windowPaths.
+     * If a robot can't be planned, it is given the highest priority and the window is planned again (at most once per robot).
+     *
+     * @return false if no order of the robots allows to plan the window
+     */
+    private boolean planWindow(short[] locations, short[] planningOrder, short[][] windowPaths) {
+        for (int attempt = 0; attempt < robotsNumber; attempt++) {
+            //At step 0, every robot is at its current location, even the ones which are not planned yet
+            Arrays.fill(reservations, 0);
+            for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) reservations[locations[robotIndex]] = robotIndex + 1;
+            int failedRank = -1;
+            for (int rank = 0; rank < robotsNumber && failedRank == -1; rank++) {
+                short robotIndex = planningOrder[rank];
+                if (planRobot(robotIndex, locations[robotIndex], windowPaths[robotIndex])) reserve(robotIndex, windowPaths[robotIndex]);
+                else failedRank = rank;
+            }
+            if (failedRank == -1) return true;
+            replansNumber++;
+            short failedRobot = planningOrder[failedRank];
+            priorities[failedRobot] = ++highestPriority;
+            System.arraycopy(planningOrder, 0, planningOrder, 1, failedRank);
+            planningOrder[0] = failedRobot;
+        }
+        System.out.println("Error in WindowedCooperativeAStar.planWindow(): no planning order of the robots works for this window");
+        return false;
+    }
+
+    private void reserve(short robotIndex, short[] windowPath) {
+        for (int step = 1; step <= windowSize; step++) reservations[step * locationsNumber + windowPath[step]] = robotIndex + 1;
+    }
+
+    /**
+     * Tells if the robot can be on the location at the step, without getting in the way of the robots already planned.
+     * The robots move one after the other, by order of index, so a robot can't be on a location:
+     *      - at the same step as another robot
+     *      - at the step following another robot which moves after it (it would enter the location before the other robot left it)
+     *      - at the step before another robot which moves before it (the other robot would enter the location before it left it)
+     */
+    private boolean isFree(short robotIndex, int location, int step) {
+        int state = step * locationsNumber + location;
+        if (reservations[state] != 0) return false;
+        if (reservations[state - locationsNumber] - 1 > robotIndex) return false;
+        if (step < windowSize) {
+            int nextRobot = reservations[state + locationsNumber] - 1;
+            if (nextRobot >= 0 && nextRobot < robotIndex) return false;
+        }
+        return true;
+    }
+
+    /**
+     * A* in space-time over the window: the cheapest path minimising (cost of the moves in the window) + (true cost left
+     * to the goal at the end of the window). Among paths of equal evaluation, the one ending closest to the goal is preferred,
+     * as waiting costs nothing.
+     *
+     * @return false if every path of the robot gets in the way of the robots already planned
+     */
+    private boolean planRobot(short robotIndex, short startLocation, short[] windowPath) {
+        searchesNumber++;
+        currentStamp++;
+        currentDistances = distances[robotIndex];
+        heapSize = 0;
+        openState(startLocation, -1);
+        stateCosts[startLocation] = 0;
+        pushState(startLocation);
+        while (heapSize > 0) {
+            int state = pollState();
+            if (isStateClosed[state]) continue;
+            isStateClosed[state] = true;
+            statesExpanded++;
+            int step = state / locationsNumber;
+            int location = state - step * locationsNumber;
+            if (step == windowSize) {
+                for (; step >= 0; step--) {
+                    windowPath[step] = (short) (state - step * locationsNumber);
+                    state = stateParents[state];
+                }
+                return true;
+            }
+            for (int move = 0; move <= NONE; move++) {
+                int newLocation = (move == NONE) ? location : grid.getNeighbour(location, move);
+                if (newLocation == -1 || currentDistances[newLocation] == UNREACHABLE || !isFree(robotIndex, newLocation, step + 1)) continue;
+                int newState = state + locationsNumber + newLocation - location;
+                int newCost = stateCosts[state] + ((move == NONE) ? 0 : grid.getCost(newLocation));
+                if (stateStamps[newState] != currentStamp) openState(newState, state);
+                else if (!isStateClosed[newState] && newCost < stateCosts[newState]) stateParents[newState] = state;
+                else continue;
+                stateCosts[newState] = newCost;
+                pushState(newState);
+            }
+        }
+        return false;
+    }
+
+    private void openState(int state, int parentState) {
+        stateStamps[state] = currentStamp;
+        isStateClosed[state] = false;
+        stateParents[state] = parentState;
+    }
+
+    //The open list is a binary heap of states: a state whose cost decreases is added again, and its old entry is skipped once closed
+    private void pushState(int state) {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+        int position = heapSize++;
+        while (position > 0) {
+            int parentPosition = (position - 1) >>> 1;
+            if (!isBefore(state, heap[parentPosition])) break;
+            heap[position] = heap[parentPosition];
+            position = parentPosition;
+        }
+        heap[position] = state;
+    }
+
+    private int pollState() {
+        int first = heap[0];
+        int last = heap[--heapSize];
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && isBefore(heap[child + 1], heap[child])) child++;
+            if (!isBefore(heap[child], last)) break;
+            heap[position] = heap[child];
+            position = child;
+        }
+        if (heapSize > 0) heap[position] = last;
+        return first;
+    }
+
+    //Lowest evaluation first, then closest to the goal, then latest step
+    private boolean isBefore(int state1, int state2) {
+        int step1 = state1 / locationsNumber;
+        int step2 = state2 / locationsNumber;
+        int distance1 = currentDistances[state1 - step1 * locationsNumber];
+        int distance2 = currentDistances[state2 - step2 * locationsNumber];
+        int evaluation1 = stateCosts[state1] + distance1;
+        int evaluation2 = stateCosts[state2] + distance2;
+        if (evaluation1 != evaluation2) return evaluation1 < evaluation2;
+        if (distance1 != distance2) return distance1 < distance2;
+        return step1 > step2;
+    }
+
+    private boolean areRobotsOnGoals(short[] locations) {
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            if (distances[robotIndex][locations[robotIndex]] != 0) return false;
+        }
+        return true;
+    }
+
+    //The waits of each robot on its goal at the end of the plan are removed
+    private short[][] buildPaths(ArrayList<short[]> steps) {
+        short[][] paths = new short[robotsNumber][];
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            int length = steps.size();
+            while (length > 1 && steps.get(length - 2)[robotIndex] == steps.get(length - 1)[robotIndex]) length--;
+            paths[robotIndex] = new short[length];
+            for (int step = 0; step < length; step++) paths[robotIndex][step] = steps.get(step)[robotIndex];
+        }
+        return paths;
+    }
+
+    private void displayDiagnosis(short[][] paths, long startTime, int stepsNumber) {
+        //The states of the searches of the robots are only reported at the end
+        searchField.getProgress().report(statesExpanded, -1, -1);
+        long time = System.currentTimeMillis() - startTime;
+        if (paths != null)
+            System.out.println("Solution found in " + time + "ms!\nSteps: " + stepsNumber);
+        else
+            System.out.println("Solution not found after " + time + "ms:\nSteps: " + stepsNumber);
+        System.out.println(this);
+        if (paths == null) return;
+        System.out.println("Total cost of solution: " + searchField.getPathsCost(paths));
+    }
+
+    @Override
+    public String toString() {
+        return "WindowedCooperativeAStar{" +
+                "windowSize=" + windowSize +
+                ", windowsPlanned=" + windowsPlanned +
+                ", searchesNumber=" + searchesNumber +
+                ", replansNumber=" + replansNumber +
+                ", statesExpanded=" + statesExpanded +
+                '}';
+    }
+}
@@ -0,0 +1,84 @@
+package search.heuristics;
+
+import field.CompiledGrid;
+
+import java.util.Arrays;
+
+/**
+ * This class computes the exact cost to reach a goal from every location of the level (see Dijkstra.java).
+ *
+ * The costs of the moves are small integers (1 to enter an empty block or a goal, 5 to enter a trap, see BlockType.java),
+ * so the priority queue of the Dijkstra algorithm can be replaced by buckets (Dial's algorithm): the bucket d holds the locations
+ * whose distance is d. The buckets are expanded by increasing distance, and a location is only ever pushed into a bucket
+ * at most maxCost further than the one expanded, so maxCost + 1 buckets are enough, used as a ring.
+ * Every push and every pop is then done in constant time: the construction is linear in the number of locations,
+ * instead of n log(n) with a binary heap.
+ *
+ * The search goes backward, from the goal: a robot moving from a location to the one expanded pays the cost of entering it.
+ * The distances are an int array, the locations already expanded a bitset, and the buckets int arrays: a builder is created once
+ * for a level and reused for all the goals, so they are allocated only once.
+ * A builder is not thread-safe: each thread needs its own.
+ */
+
+public class BucketDijkstra {
+
+    //Distance of the locations from which the goal can't be reached (walls, closed areas)
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final CompiledGrid grid;
+    private final long[] expandedLocations;
+    private final int[][] buckets;
+    private final int[] bucketSizes;
+
+    public BucketDijkstra(CompiledGrid grid) {
+        this.grid = grid;
+        int locationsNumber = grid.getLocationsNumber();
+        int maxCost = 0;
+        for (int location = 0; location < locationsNumber; location++) {
+            if (grid.isWalkable(location)) maxCost = Math.max(maxCost, grid.getCost(location));
+        }
+        expandedLocations = new long[(locationsNumber + 63) >>> 6];
+        buckets = new int[maxCost + 1][16];
+        bucketSizes = new int[maxCost + 1];
+    }
+
+    /**
+     * @param distances is filled with the cost of the cheapest path from each location to the goal (UNREACHABLE if there is none).
+     *                  Its length is the number of locations of the level.
+     */
+    public void computeDistances(int goalLocation, int[] distances) {
+        Arrays.fill(distances, UNREACHABLE);
+        Arrays.fill(expandedLocations, 0);
+        distances[goalLocation] = 0;
+        push(goalLocation, 0);
+        int locationsQueued = 1;
+        for (int distance = 0; locationsQueued > 0; distance++) {
+            int bucketIndex = distance % buckets.length;
+            //A location reached by a cost of 0 would go back into this same bucket, so the bucket is emptied until it stays empty
+            while (bucketSizes[bucketIndex] > 0) {
+                int location = buckets[bucketIndex][--bucketSizes[bucketIndex]];
+                locationsQueued--;
+                //A location can be pushed again when a cheaper path is found: only its first pop counts
+                if ((expandedLocations[location >>> 6] & (1L << location)) != 0) continue;
+                expandedLocations[location >>> 6] |= 1L << location;
+                //Every neighbour reaches this location by entering it
+                int neighbourDistance = distance + grid.getCost(location);
+                for (int direction = 0; direction < CompiledGrid.DIRECTIONS_NUMBER; direction++) {
+                    int neighbour = grid.getNeighbour(location, direction);
+                    if (neighbour == -1 || neighbourDistance >= distances[neighbour]) continue;
+                    distances[neighbour] = neighbourDistance;
+                    push(neighbour, neighbourDistance);
+                    locationsQueued++;
+                }
+            }
+        }
+    }
+
+    private void push(int location, int distance) {
+        int bucketIndex = distance % buckets.length;
+        if (bucketSizes[bucketIndex] == buckets[bucketIndex].length) {
+            buckets[bucketIndex] = Arrays.copyOf(buckets[bucketIndex], buckets[bucketIndex].length * 2);
+        }
+        buckets[bucketIndex][bucketSizes[bucketIndex]++] = location;
+    }
+}
@@ -1,14 +1,8 @@
 package search.heuristics;
 
-import field.BlockType;
-import field.Direction;
+import field.CompiledGrid;
 import search.SearchField;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.PriorityQueue;
-import java.util.Set;
-
 /**
  * Created by Fabien on 22/10/2016
  *
@@ -18,83 +12,51 @@ import java.util.Set;
  * not only the distance between the location and the goal but also the cost of traps, and the presence of walls.
  *
  * We can consider that this is an exact heuristic, or at least an extremely accurate one.
+ *
+ * The costs are computed by a Dijkstra with buckets instead of a priority queue, in a time linear in the size of the level
+ * (see BucketDijkstra.java), only once for each goal of a level: they are then kept by the HeuristicCache.
+ * The goals missing from the cache are computed in parallel (see Heuristic.calculateFields()).
  */
 
 public class Dijkstra extends Heuristic {
 
-    private ArrayList<Direction> directionsList;
-
     public Dijkstra(SearchField searchField) {
         super(searchField);
-        directionsList = new ArrayList<>();
-        buildDirectionsList();
         //Heuristic values are calculated as soon as the object is declared.
         calculateValues();
     }
 
     private void calculateValues() {
-        for (short index = 0; index < theSearchField.getRobotsList().size(); index++) {
-            distanceDijkstra(index);
-        }
-    }
-
-    private void buildDirectionsList() {
-        directionsList.add(Direction.UP);
-        directionsList.add(Direction.DOWN);
-        directionsList.add(Direction.LEFT);
-        directionsList.add(Direction.RIGHT);
-    }
-
-    private void distanceDijkstra(short robotIndex) {
-        short goalLocation = theSearchField.getRobotData().getGoalLocationForRobot(robotIndex);
-        short actualPos, nextPos;
-        float addition;
-        int sizeOfField = theSearchField.getMatrix().size();
-
-        //Create a priority queue
-        PriorityQueue<Short> myPriority = new PriorityQueue<>((nb1, nb2) -> (int) (heuristicField.get(robotIndex).get(nb1) - heuristicField.get(robotIndex).get(nb2)));
-
-        //Define a marking table
-        Set<Short> isMarked = new HashSet<>();
-
-        //Initialise every location heuristic at a maximal value
-        for (int i = 0; i < sizeOfField; i++) {
-            heuristicField.get(robotIndex).add(Float.MAX_VALUE);
-        }
-
-        //The goal location heuristic is set to 0
-        heuristicField.get(robotIndex).set(goalLocation, (float) 0);
-
-        //Insert first location (goal) in the priority queue
-        myPriority.add(goalLocation);
-
-        //While the priority queue is not empty
-        while (!myPriority.isEmpty()) {
-            //Dequeue the top location
-            actualPos = myPriority.poll();
-
-            //Mark the location dequeued
-            isMarked.add(actualPos);
-            //For every adjacent location that has not been marked yet
-            for (Direction dir : directionsList) {
-                //Calculate the value of the neighbour location
-                nextPos = (short) (actualPos + dir.getDirectionValue());
-                if (nextPos < theSearchField.getMatrix().size() && nextPos >= 0) {
-                    //If the neighbour location has not already been marked
-                    if (!isMarked.contains(nextPos) && (theSearchField.getBlocktypeFromPos(nextPos) != BlockType.WALL)) {
-                        //The heuristic of the neighbour location is equal to its parent location + the cost of the block at this neighbour location
-                        addition = (heuristicField.get(robotIndex).get(actualPos) + theSearchField.getBlockCost(actualPos));
-
-                        //If the calculated cost for the neighbour location is inferior to any cost calculated before for this location
-                        if (addition < heuristicField.get(robotIndex).get(nextPos) && addition > -1) {
-                            //Enqueue this neighbour location with its cost updated
-                            heuristicField.get(robotIndex).set(nextPos, addition);
-                            myPriority.add(nextPos);
-                        }
-                    }
+        CompiledGrid grid = theSearchField.getGrid();
+        String cacheDirectory = theSearchField.getHeuristicCacheDirectory();
+        //Each thread has its own builder, only created if one of its goals is not in the cache (see BucketDijkstra.java)
+        calculateFields(() -> new FieldBuilder() {
+            private BucketDijkstra bucketDijkstra;
+            private int[] distances;
+
+            @Override
+            public float[] computeField(short goalLocation) {
+                float[] field = HeuristicCache.getDistances(grid, goalLocation, cacheDirectory);
+                if (field != null) return field;
+                if (bucketDijkstra == null) {
+                    bucketDijkstra = new BucketDijkstra(grid);
+                    distances = new int[grid.getLocationsNumber()];
                 }
+                field = distanceDijkstra(goalLocation, bucketDijkstra, distances);
+                HeuristicCache.putDistances(grid, goalLocation, field, cacheDirectory);
+                return field;
             }
+        });
+    }
+
+    private float[] distanceDijkstra(short goalLocation, BucketDijkstra bucketDijkstra, int[] distances) {
+        bucketDijkstra.computeDistances(goalLocation, distances);
+        float[] heuristicValues = new float[distances.length];
+        //The locations which can't reach the goal (walls included) keep a maximal heuristic
+        for (int location = 0; location < distances.length; location++) {
+            heuristicValues[location] = (distances[location] == BucketDijkstra.UNREACHABLE) ? Float.MAX_VALUE : distances[location];
         }
+        return heuristicValues;
     }
 
     @Override
@@ -105,7 +67,7 @@ public class Dijkstra extends Heuristic {
             output += "Robot " + index + " : \n";
             for (short i = 0; i < theSearchField.getRowNumber(); i++) {
                 for (short j = 0; j < theSearchField.getColumnNumber(); j++) {
-                    output += " " + Math.round(heuristicField.get(index).get((i * theSearchField.getColumnNumber()) + j));
+                    output += " " + Math.round(heuristicField[index][(i * theSearchField.getColumnNumber()) + j]);
                 }
                 output += "\n";
             }
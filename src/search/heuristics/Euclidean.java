@@ -18,18 +18,17 @@ public class Euclidean extends Heuristic {
     }
 
     private void calculateValues() {
-        for (short index = 0; index < theSearchField.getRobotsList().size(); index++) {
-            distanceEuclide(index);
-        }
+        calculateFields(() -> this::distanceEuclide);
     }
 
-    private void distanceEuclide(short robotIndex) {
-        int sizeOfField = theSearchField.getMatrix().size();
-        short goalLocation = theSearchField.getRobotData().getGoalLocationForRobot(robotIndex);
+    private float[] distanceEuclide(short goalLocation) {
+        int sizeOfField = theSearchField.getGrid().getLocationsNumber();
+        float[] heuristicValues = new float[sizeOfField];
         for (short i = 0; i < sizeOfField; i++) {
-            heuristicField.get(robotIndex).add((float) Math.sqrt(Math.pow(theSearchField.getRowFromPos(i) - theSearchField.getRowFromPos(goalLocation), 2)
-                    + Math.pow(theSearchField.getColumnFromPos(i) - theSearchField.getColumnFromPos(goalLocation), 2)));
+            heuristicValues[i] = (float) Math.sqrt(Math.pow(theSearchField.getRowFromPos(i) - theSearchField.getRowFromPos(goalLocation), 2)
+                    + Math.pow(theSearchField.getColumnFromPos(i) - theSearchField.getColumnFromPos(goalLocation), 2));
         }
+        return heuristicValues;
     }
 
     @Override
@@ -40,7 +39,7 @@ public class Euclidean extends Heuristic {
             output += "Robot " + index + " : \n";
             for (short i = 0; i < theSearchField.getRowNumber(); i++) {
                 for (short j = 0; j < theSearchField.getColumnNumber(); j++) {
-                    output += " " + heuristicField.get(index).get((i * theSearchField.getColumnNumber()) + j);
+                    output += " " + heuristicField[index][(i * theSearchField.getColumnNumber()) + j];
                 }
                 output += "\n";
             }
@@ -1,8 +1,15 @@
 package search.heuristics;
 
+import search.Node;
 import search.SearchField;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 
 /**
  * Created by Fabien on 25/10/2016
@@ -13,24 +20,66 @@ import java.util.ArrayList;
  *
  * The blocks have heuristic values which are different depending on the goal considered, so we need to calculate and
  * store as many matrices of grades as we have robots.
+ *
+ * The matrices only depend on the goals: calculateFields() computes the one of each goal only once, even if several robots
+ * share it, and computes the goals in parallel on the common fork-join pool.
  */
 
 public class Heuristic {
 
     protected SearchField theSearchField;
-    protected ArrayList<ArrayList<Float>> heuristicField;
+    //heuristicField[robotIndex][location] is the heuristic of the location for this robot (an array of primitives: no boxed Float).
+    //The array of a robot is allocated by the subclass, and can be shared with other robots and other heuristics (see HeuristicCache.java)
+    protected float[][] heuristicField;
 
     public Heuristic(SearchField searchField) {
-        //Initialise every list and get the searchField data so it can be read while calculating heuristic
+        //Get the searchField data so it can be read while calculating heuristic
         theSearchField = searchField;
-        heuristicField = new ArrayList<>();
-        for (int i = 0; i < searchField.getRobotsList().size(); i++) {
-            heuristicField.add(new ArrayList<>());
+        heuristicField = new float[searchField.getRobotsList().size()][];
+    }
+
+    //Computes the heuristic of every location for a goal. A builder is only used by one thread, so it can keep its work arrays
+    protected interface FieldBuilder {
+        float[] computeField(short goalLocation);
+    }
+
+    /**
+     * Fills heuristicField, with one field per goal shared by the robots of this goal.
+     * The goals are split into one share per thread of the common fork-join pool, each share having its own builder.
+     */
+    protected void calculateFields(Supplier<FieldBuilder> builderFactory) {
+        //The robots of each goal, in the order of the robots
+        Map<Short, List<Short>> robotsByGoal = new LinkedHashMap<>();
+        for (short robotIndex = 0; robotIndex < heuristicField.length; robotIndex++) {
+            short goalLocation = theSearchField.getRobotData().getGoalLocationForRobot(robotIndex);
+            robotsByGoal.computeIfAbsent(goalLocation, (Short goal) -> new ArrayList<>()).add(robotIndex);
+        }
+        List<Short> goals = new ArrayList<>(robotsByGoal.keySet());
+        float[][] fields = new float[goals.size()][];
+        int sharesNumber = Math.min(goals.size(), ForkJoinPool.getCommonPoolParallelism());
+        if (sharesNumber <= 1) {
+            FieldBuilder builder = builderFactory.get();
+            for (int goalIndex = 0; goalIndex < goals.size(); goalIndex++) fields[goalIndex] = builder.computeField(goals.get(goalIndex));
+        } else {
+            List<ForkJoinTask<?>> shares = new ArrayList<>();
+            for (int share = 0; share < sharesNumber; share++) {
+                int firstGoal = share;
+                shares.add(ForkJoinTask.adapt(() -> {
+                    FieldBuilder builder = builderFactory.get();
+                    for (int goalIndex = firstGoal; goalIndex < goals.size(); goalIndex += sharesNumber) {
+                        fields[goalIndex] = builder.computeField(goals.get(goalIndex));
+                    }
+                }));
+            }
+            ForkJoinTask.invokeAll(shares);
+        }
+        for (int goalIndex = 0; goalIndex < goals.size(); goalIndex++) {
+            for (short robotIndex : robotsByGoal.get(goals.get(goalIndex))) heuristicField[robotIndex] = fields[goalIndex];
         }
     }
 
     public float getHeuristicAtPos(short pos, short robotIndex) {
-        return heuristicField.get(robotIndex).get(pos);
+        return heuristicField[robotIndex][pos];
     }
 
     //This methods returns the sum of the heuristics of the list of robots
@@ -42,6 +91,34 @@ public class Heuristic {
         return totalHeuristic;
     }
 
+    //Same sum, read directly from the packed locations of a node (no list of boxed locations is built)
+    public float getTotalHeuristic(Node node) {
+        float totalHeuristic = 0;
+        for (short robotIndex = 0; robotIndex < node.getRobotsNumber(); robotIndex++) {
+            totalHeuristic += getHeuristicAtPos(node.getRobotLocation(robotIndex), robotIndex);
+        }
+        return totalHeuristic;
+    }
+
+    //Same sum, for a node which only contains a group of robots: the i-th robot of the node is the robot group[i]
+    public float getTotalHeuristic(Node node, short[] group) {
+        float totalHeuristic = 0;
+        for (short robotIndex = 0; robotIndex < node.getRobotsNumber(); robotIndex++) {
+            totalHeuristic += getHeuristicAtPos(node.getRobotLocation(robotIndex), group[robotIndex]);
+        }
+        return totalHeuristic;
+    }
+
+    //True when the heuristic of a node is the sum of the heuristics of its robots (see PartialExpansion.java)
+    public boolean isAdditive() {
+        return true;
+    }
+
+    //Statistics printed after a search, or null when the heuristic has none
+    public String getDiagnosis() {
+        return null;
+    }
+
     @Override
     public String toString() {
         String output = "";
@@ -50,7 +127,7 @@ public class Heuristic {
             output += "Robot " + index + " : \n";
             for (short i = 0; i < theSearchField.getRowNumber(); i++) {
                 for (short j = 0; j < theSearchField.getColumnNumber(); j++) {
-                    output += " " + heuristicField.get(index).get(i * theSearchField.getColumnNumber() + j);
+                    output += " " + heuristicField[index][i * theSearchField.getColumnNumber() + j];
                 }
                 output += "\n";
             }
@@ -0,0 +1,210 @@
+package search.heuristics;
+
+import field.CompiledGrid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the fields of distances computed by the Dijkstra heuristic (see Dijkstra.java), so that they are computed
+ * only once for a level: the goals never change when the robots are moved, or when the level is loaded again.
+ *
+ * A field is the exact cost to reach a goal from every location of the level. It only depends on the blocks of the level and
+ * on the goal, so it is identified by the hash of the content of the level (see CompiledGrid.getContentHash()) and the goal.
+ *
+ * The fields are kept in memory up to MEMORY_BUDGET bytes: beyond it, the fields used the least recently are dropped (LRU).
+ * When a directory is given (DIRECTORY by default, see SearchField.setHeuristicCacheDirectory()), every field computed is also
+ * written to a file of this directory, and read from it when it is not in memory anymore, even after a restart of the game.
+ * A file stores:
+ *      - the number of locations and of columns of the level, checked when the file is read
+ *      - the distance of each location, in 2 bytes (or in 4 bytes when a distance doesn't fit), 0xFFFF being unreachable
+ *
+ * The fields given by the cache are shared by all the heuristics of this level: they must never be modified.
+ * The cache can be used by several searches at the same time, but a field can be computed twice if both searches need it
+ * at the same time.
+ */
+
+public final class HeuristicCache {
+
+    //Settings, which can be edited before the first search (see MainClass.java). DIRECTORY is only the directory of the
+    //SearchFields created afterwards: each search passes its own directory to the cache
+    public static long MEMORY_BUDGET = 1L << 26;
+    public static String DIRECTORY = null;
+
+    private static final int FILE_FORMAT_SHORT = 0x44495332;
+    private static final int FILE_FORMAT_INT = 0x44495334;
+    private static final int UNREACHABLE_SHORT = 0xFFFF;
+    //Bytes of a float[] beyond its values, and of its entry in the map
+    private static final int ENTRY_OVERHEAD = 64;
+
+    //The access order of this LinkedHashMap is the order of use: its first fields are the least recently used
+    private static final LinkedHashMap<Key, float[]> fields = new LinkedHashMap<>(16, 0.75f, true);
+    private static long bytesUsed;
+    private static long memoryHits;
+    private static long diskHits;
+    private static long misses;
+
+    private HeuristicCache() {
+    }
+
+    /**
+     * @param directory is the directory of the files of the fields, or null if they are only kept in memory
+     * @return the cost to reach the goal from every location (Float.MAX_VALUE when it can't), or null if it was never computed
+     */
+    public static float[] getDistances(CompiledGrid grid, short goalLocation, String directory) {
+        Key key = new Key(grid.getContentHash(), goalLocation);
+        synchronized (HeuristicCache.class) {
+            float[] distances = fields.get(key);
+            if (distances != null) {
+                memoryHits++;
+                return distances;
+            }
+        }
+        float[] distances = (directory == null) ? null : readFile(grid, key, directory);
+        synchronized (HeuristicCache.class) {
+            if (distances == null) {
+                misses++;
+                return null;
+            }
+            diskHits++;
+            putInMemory(key, distances);
+        }
+        return distances;
+    }
+
+    //Keeps a field freshly computed, in memory and on the disk (if a directory is given)
+    public static void putDistances(CompiledGrid grid, short goalLocation, float[] distances, String directory) {
+        Key key = new Key(grid.getContentHash(), goalLocation);
+        synchronized (HeuristicCache.class) {
+            putInMemory(key, distances);
+        }
+        if (directory != null) writeFile(grid, key, distances, directory);
+    }
+
+    private static void putInMemory(Key key, float[] distances) {
+        long fieldBytes = getBytes(distances);
+        //A field bigger than the whole budget is never kept
+        if (fieldBytes > MEMORY_BUDGET) return;
+        float[] previousDistances = fields.put(key, distances);
+        if (previousDistances != null) bytesUsed -= getBytes(previousDistances);
+        bytesUsed += fieldBytes;
+        Iterator<Map.Entry<Key, float[]>> iterator = fields.entrySet().iterator();
+        while (bytesUsed > MEMORY_BUDGET && iterator.hasNext()) {
+            Map.Entry<Key, float[]> leastRecentlyUsed = iterator.next();
+            if (leastRecentlyUsed.getKey().equals(key)) continue;
+            bytesUsed -= getBytes(leastRecentlyUsed.getValue());
+            iterator.remove();
+        }
+    }
+
+    private static long getBytes(float[] distances) {
+        return (long) distances.length * Float.BYTES + ENTRY_OVERHEAD;
+    }
+
+    public static synchronized void clear() {
+        fields.clear();
+        bytesUsed = 0;
+    }
+
+    private static File getFile(Key key, String directory) {
+        return new File(directory, String.format("dijkstra-%016x-%d.bin", key.contentHash, key.goalLocation));
+    }
+
+    private static float[] readFile(CompiledGrid grid, Key key, String directory) {
+        File file = getFile(key, directory);
+        if (!file.isFile()) return null;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int format = input.readInt();
+            int locationsNumber = input.readInt();
+            int columnNumber = input.readInt();
+            //Another level with the same hash, or a file of another version
+            if ((format != FILE_FORMAT_SHORT && format != FILE_FORMAT_INT)
+                    || locationsNumber != grid.getLocationsNumber() || columnNumber != grid.getColumnNumber()) {
+                System.out.println("Error in HeuristicCache.readFile(): the file doesn't match the level -> file=" + file);
+                return null;
+            }
+            float[] distances = new float[locationsNumber];
+            for (int location = 0; location < locationsNumber; location++) {
+                int distance = (format == FILE_FORMAT_SHORT) ? input.readUnsignedShort() : input.readInt();
+                boolean isUnreachable = (format == FILE_FORMAT_SHORT) ? distance == UNREACHABLE_SHORT : distance == -1;
+                distances[location] = isUnreachable ? Float.MAX_VALUE : distance;
+            }
+            return distances;
+        } catch (IOException e) {
+            System.out.println("Error in HeuristicCache.readFile(): the file can't be read -> file=" + file + ", cause=" + e);
+            return null;
+        }
+    }
+
+    //The file is written under another name, then renamed: a search reading it at the same time never sees half of it
+    private static void writeFile(CompiledGrid grid, Key key, float[] distances, String directoryName) {
+        File directory = new File(directoryName);
+        File file = getFile(key, directoryName);
+        if (file.isFile()) return;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.out.println("Error in HeuristicCache.writeFile(): the directory can't be created -> directory=" + directory);
+            return;
+        }
+        boolean fitsInShorts = true;
+        for (float distance : distances) fitsInShorts &= (distance == Float.MAX_VALUE || distance < UNREACHABLE_SHORT);
+        File temporaryFile = null;
+        try {
+            temporaryFile = File.createTempFile("dijkstra", ".tmp", directory);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                output.writeInt(fitsInShorts ? FILE_FORMAT_SHORT : FILE_FORMAT_INT);
+                output.writeInt(grid.getLocationsNumber());
+                output.writeInt(grid.getColumnNumber());
+                for (float distance : distances) {
+                    if (fitsInShorts) output.writeShort(distance == Float.MAX_VALUE ? UNREACHABLE_SHORT : (int) distance);
+                    else output.writeInt(distance == Float.MAX_VALUE ? -1 : (int) distance);
+                }
+            }
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Error in HeuristicCache.writeFile(): the file can't be written -> file=" + file + ", cause=" + e);
+            if (temporaryFile != null && temporaryFile.isFile() && !temporaryFile.delete()) {
+                System.out.println("Error in HeuristicCache.writeFile(): the temporary file can't be deleted -> file=" + temporaryFile);
+            }
+        }
+    }
+
+    public static synchronized String getStatistics() {
+        return "Heuristic cache: " + fields.size() + " fields in memory (" + bytesUsed + " bytes), "
+                + memoryHits + " read from memory, " + diskHits + " read from the disk, " + misses + " computed";
+    }
+
+    private static final class Key {
+
+        private final long contentHash;
+        private final short goalLocation;
+
+        private Key(long contentHash, short goalLocation) {
+            this.contentHash = contentHash;
+            this.goalLocation = goalLocation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return contentHash == key.contentHash && goalLocation == key.goalLocation;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (contentHash ^ (contentHash >>> 32)) * 31 + goalLocation;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package search.heuristics;
+
+import field.CompiledGrid;
+import search.SearchField;
+
+import java.util.Arrays;
+
+/**
+ * This heuristic is a lighter Dijkstra heuristic (ALT: A*, landmarks and triangle inequality), for the levels too big to keep
+ * the exact cost to every goal from every location.
+ *
+ * A few locations of the level are chosen as landmarks, and the exact cost to reach each landmark from every location is computed
+ * (see BucketDijkstra.java). For a landmark L, a location x and a goal g, the triangle inequality gives two lower bounds
+ * of the cost d(x, g) to go from x to g:
+ *      d(x, g) >= d(x, L) - d(g, L)                    (going from x to L through g is never cheaper than the best way)
+ *      d(x, g) >= d(L, g) - d(L, x)                    (going from L to g through x is never cheaper than the best way)
+ * The heuristic is the best of these bounds over all the landmarks, so it is admissible, and exact when a landmark is behind
+ * the goal. The cost of a move is the cost of the location entered, so the cost of a path backward only differs by the costs of
+ * its ends: d(L, x) = d(x, L) + cost(x) - cost(L), and the costs to reach the landmarks are enough for both bounds.
+ *
+ * The landmarks are chosen by farthest-point selection: the first one is the farthest location from the first goal,
+ * then each next one is the location whose cost to reach the closest landmark is the highest (the goals which can't reach
+ * any landmark first, so that each closed area with a goal gets one). The more landmarks (LANDMARKS_NUMBER), the more accurate the heuristic.
+ *
+ * The costs are stored in 2 bytes per location and per landmark (4 bytes if a cost doesn't fit), instead of 4 bytes per location
+ * and per robot for the Dijkstra heuristic. The heuristic of a location is computed each time it is asked for.
+ */
+
+public class Landmarks extends Heuristic {
+
+    //Setting, which can be edited before the first search (see MainClass.java)
+    public static int LANDMARKS_NUMBER = 8;
+
+    private static final char UNREACHABLE_SHORT = Character.MAX_VALUE;
+
+    private final CompiledGrid grid;
+    private final int landmarksNumber;
+    private final short[] landmarkLocations;
+    //landmarkDistances[landmark][location] is the cost to reach the landmark from the location, if every cost fits in 2 bytes.
+    //Otherwise, longDistances is used instead (BucketDijkstra.UNREACHABLE for the locations which can't reach the landmark)
+    private char[][] landmarkDistances;
+    private int[][] longDistances;
+    //goalDistances[robotIndex][landmark] is the cost to reach the landmark from the goal of the robot
+    private final int[][] goalDistances;
+    private final int[] goalCosts;
+
+    //Statistics
+    private final long buildTime;
+
+    public Landmarks(SearchField searchField) {
+        this(searchField, LANDMARKS_NUMBER);
+    }
+
+    public Landmarks(SearchField searchField, int landmarksNumber) {
+        super(searchField);
+        long startTime = System.nanoTime();
+        grid = searchField.getGrid();
+        int walkableNumber = 0;
+        for (int location = 0; location < grid.getLocationsNumber(); location++) {
+            if (grid.isWalkable(location)) walkableNumber++;
+        }
+        this.landmarksNumber = Math.max(1, Math.min(landmarksNumber, walkableNumber));
+        landmarkLocations = new short[this.landmarksNumber];
+        //Heuristic values are calculated as soon as the object is declared.
+        selectLandmarks();
+        short robotsNumber = (short) searchField.getRobotsList().size();
+        goalDistances = new int[robotsNumber][this.landmarksNumber];
+        goalCosts = new int[robotsNumber];
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) {
+            short goalLocation = searchField.getRobotData().getGoalLocationForRobot(robotIndex);
+            goalCosts[robotIndex] = grid.getCost(goalLocation);
+            for (int landmark = 0; landmark < this.landmarksNumber; landmark++) {
+                goalDistances[robotIndex][landmark] = getDistance(landmark, goalLocation);
+            }
+        }
+        buildTime = System.nanoTime() - startTime;
+    }
+
+    private void selectLandmarks() {
+        BucketDijkstra bucketDijkstra = new BucketDijkstra(grid);
+        int locationsNumber = grid.getLocationsNumber();
+        int[][] distances = new int[landmarksNumber][locationsNumber];
+        //The closed areas of the level without any goal never get a landmark: nothing has to be estimated there
+        boolean[] isGoal = new boolean[locationsNumber];
+        for (short robotIndex = 0; robotIndex < heuristicField.length; robotIndex++) {
+            isGoal[theSearchField.getRobotData().getGoalLocationForRobot(robotIndex)] = true;
+        }
+        //Cost to reach the closest landmark from each location
+        int[] closestDistances = new int[locationsNumber];
+        int firstGoal = 0;
+        if (heuristicField.length > 0) firstGoal = theSearchField.getRobotData().getGoalLocationForRobot((short) 0);
+        else while (!grid.isWalkable(firstGoal)) firstGoal++;
+        bucketDijkstra.computeDistances(firstGoal, closestDistances);
+        //The first landmark is the farthest location from the first goal, not this goal itself
+        int maxDistance = 0;
+        for (int landmark = 0; landmark < landmarksNumber; landmark++) {
+            int farthestLocation = -1;
+            for (int location = 0; location < locationsNumber; location++) {
+                if (!grid.isWalkable(location) || (closestDistances[location] == BucketDijkstra.UNREACHABLE && !isGoal[location])) continue;
+                if (farthestLocation == -1 || closestDistances[location] > closestDistances[farthestLocation]) farthestLocation = location;
+            }
+            landmarkLocations[landmark] = (short) farthestLocation;
+            bucketDijkstra.computeDistances(farthestLocation, distances[landmark]);
+            for (int location = 0; location < locationsNumber; location++) {
+                if (landmark == 0 || distances[landmark][location] < closestDistances[location]) closestDistances[location] = distances[landmark][location];
+                if (distances[landmark][location] != BucketDijkstra.UNREACHABLE) maxDistance = Math.max(maxDistance, distances[landmark][location]);
+            }
+        }
+        if (maxDistance >= UNREACHABLE_SHORT) {
+            longDistances = distances;
+            return;
+        }
+        landmarkDistances = new char[landmarksNumber][locationsNumber];
+        for (int landmark = 0; landmark < landmarksNumber; landmark++) {
+            for (int location = 0; location < locationsNumber; location++) {
+                int distance = distances[landmark][location];
+                landmarkDistances[landmark][location] = (distance == BucketDijkstra.UNREACHABLE) ? UNREACHABLE_SHORT : (char) distance;
+            }
+        }
+    }
+
+    private int getDistance(int landmark, int location) {
+        if (longDistances != null) return longDistances[landmark][location];
+        char distance = landmarkDistances[landmark][location];
+        return (distance == UNREACHABLE_SHORT) ? BucketDijkstra.UNREACHABLE : distance;
+    }
+
+    @Override
+    public float getHeuristicAtPos(short pos, short robotIndex) {
+        int heuristic = 0;
+        for (int landmark = 0; landmark < landmarksNumber; landmark++) {
+            int locationDistance = getDistance(landmark, pos);
+            int goalDistance = goalDistances[robotIndex][landmark];
+            //Only one of them reaching the landmark means that the goal can't be reached (the moves are reversible)
+            if (locationDistance == BucketDijkstra.UNREACHABLE || goalDistance == BucketDijkstra.UNREACHABLE) {
+                if (locationDistance != goalDistance) return Float.MAX_VALUE;
+                continue;
+            }
+            heuristic = Math.max(heuristic, locationDistance - goalDistance);
+            heuristic = Math.max(heuristic, goalDistance + goalCosts[robotIndex] - locationDistance - grid.getCost(pos));
+        }
+        return heuristic;
+    }
+
+    public short[] getLandmarkLocations() {
+        return landmarkLocations.clone();
+    }
+
+    public long getBytesUsed() {
+        return (long) landmarksNumber * grid.getLocationsNumber() * ((longDistances != null) ? Integer.BYTES : Character.BYTES);
+    }
+
+    @Override
+    public String getDiagnosis() {
+        long dijkstraBytes = (long) goalCosts.length * grid.getLocationsNumber() * Float.BYTES;
+        return "Landmarks heuristic: " + landmarksNumber + " landmarks built in " + buildTime / 1000000 + "ms, "
+                + getBytesUsed() + " bytes (" + dijkstraBytes + " bytes for the Dijkstra heuristic)";
+    }
+
+    @Override
+    public String toString() {
+        String output = "Landmarks: " + Arrays.toString(landmarkLocations) + "\n";
+        short nRobots = (short) theSearchField.getRobotsList().size();
+        for (short index = 0; index < nRobots; index++) {
+            output += "Robot " + index + " : \n";
+            for (short i = 0; i < theSearchField.getRowNumber(); i++) {
+                for (short j = 0; j < theSearchField.getColumnNumber(); j++) {
+                    output += " " + Math.round(getHeuristicAtPos((short) (i * theSearchField.getColumnNumber() + j), index));
+                }
+                output += "\n";
+            }
+            output += "\n";
+        }
+        return output;
+    }
+
+    @Override
+    public String type() {
+        return "Landmarks Heuristic";
+    }
+}
@@ -20,18 +20,17 @@ public class Manhattan extends Heuristic {
     }
 
     private void calculateValues() {
-        for (short index = 0; index < theSearchField.getRobotsList().size(); index++) {
-            distanceManhattan(index);
-        }
+        calculateFields(() -> this::distanceManhattan);
     }
 
-    private void distanceManhattan(short robotIndex) {
-        int sizeOfField = theSearchField.getMatrix().size();
-        short goalLocation = theSearchField.getRobotData().getGoalLocationForRobot(robotIndex);
+    private float[] distanceManhattan(short goalLocation) {
+        int sizeOfField = theSearchField.getGrid().getLocationsNumber();
+        float[] heuristicValues = new float[sizeOfField];
         for (short i = 0; i < sizeOfField; i++) {
-            heuristicField.get(robotIndex).add((float) Math.abs(theSearchField.getRowFromPos(i) - theSearchField.getRowFromPos(goalLocation))
-                    + Math.abs(theSearchField.getColumnFromPos(i) - theSearchField.getColumnFromPos(goalLocation)));
+            heuristicValues[i] = (float) Math.abs(theSearchField.getRowFromPos(i) - theSearchField.getRowFromPos(goalLocation))
+                    + Math.abs(theSearchField.getColumnFromPos(i) - theSearchField.getColumnFromPos(goalLocation));
         }
+        return heuristicValues;
     }
 
     @Override
@@ -42,7 +41,7 @@ public class Manhattan extends Heuristic {
             output += "Robot " + index + " : \n";
             for (short i = 0; i < theSearchField.getRowNumber(); i++) {
                 for (short j = 0; j < theSearchField.getColumnNumber(); j++) {
-                    output += " " + Math.round(heuristicField.get(index).get((i * theSearchField.getColumnNumber()) + j));
+                    output += " " + Math.round(heuristicField[index][(i * theSearchField.getColumnNumber()) + j]);
                 }
                 output += "\n";
             }
@@ -0,0 +1,294 @@
+package search.heuristics;
+
+import field.CompiledGrid;
+import search.Node;
+import search.SearchField;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This heuristic adds the interactions between the robots to the Dijkstra heuristic (a pairwise pattern database).
+ *
+ * The Dijkstra heuristic is the sum of the costs of the robots as if each one was alone: when two robots have to cross each other
+ * in a corridor, one of them has to go back or to wait in a side cell, and the Dijkstra heuristic doesn't know it.
+ * So for each pair of robots, we compute the exact cost for both of them to reach their goals together, from every pair of locations
+ * (the pair table), with the same moves as the A*: the first robot moves, then the second one, and a robot can't enter a location
+ * taken by the other one. The excess of a pair is this cost minus the Dijkstra heuristics of both robots (never negative).
+ *
+ * The cost of a solution for all robots is at least the cost of the pairs of robots taken apart, as long as no robot is counted twice:
+ * so the heuristic of a node is the sum of the Dijkstra heuristics, plus the excesses of a set of pairs without any common robot.
+ * The best set is a maximum weight matching of the robots, whose weights are the excesses: it is found exactly by going through
+ * all the matchings when the robots are at most MAX_EXACT_MATCHING, and greedily above (any matching is admissible).
+ * So the heuristic is admissible, but not consistent: the A* still finds the optimal solution, because a configuration reached again
+ * with a lower cost is queued again (see SearchField.markVisited()).
+ *
+ * A pair table is computed backward from the goals of the pair, by a Dijkstra with buckets (see BucketDijkstra.java) on the pairs
+ * of walkable locations, the first time a node needs it. It stores each cost in 2 bytes, so a level of n walkable locations
+ * takes 2 * n * n bytes per pair: once the memory budget is spent, the pairs left only count their Dijkstra heuristics.
+ *
+ * The heuristic of a single robot is still the Dijkstra one (see getHeuristicAtPos()), so the searches which read the locations
+ * one by one (CBS, prioritized planning...) get the Dijkstra heuristic, and the partial expansion, which predicts the heuristic
+ * of the children from the ones of the robots, can't be used with it (see isAdditive()).
+ */
+
+public class Pairwise extends Heuristic {
+
+    private static final long DEFAULT_MEMORY_BUDGET = 1L << 28;
+    //Beyond this number of robots, the matching is greedy
+    private static final int MAX_EXACT_MATCHING = 8;
+    //Cost of the pairs of locations from which the goals can't be reached (or where both robots would be on the same location)
+    private static final char UNREACHABLE = Character.MAX_VALUE;
+    private static final char MAX_COST = UNREACHABLE - 1;
+    private static final char[] OVER_BUDGET = new char[0];
+
+    private final CompiledGrid grid;
+    private final long memoryBudget;
+    private final short robotsNumber;
+    //The walkable locations are numbered from 0 to walkableNumber - 1: the pair tables only store them
+    private final int walkableNumber;
+    private final int[] walkableIndexes;
+    private final short[] walkableLocations;
+    //The table of the pair (first, second) is at first * robotsNumber + second: the first robot is the one which moves first
+    private final AtomicReferenceArray<char[]> pairTables;
+    //The group of all the robots, for the nodes which contain all of them (the i-th robot of the node is the robot i)
+    private final short[] allRobots;
+    //The heuristic is computed for every child, by every thread of the parallel A*: each thread keeps its own work arrays
+    private final ThreadLocal<WorkArrays> workArrays;
+
+    //Statistics
+    private int tablesBuilt;
+    private int pairsOverBudget;
+    private long buildTime;
+    private long bytesUsed;
+
+    public Pairwise(SearchField searchField) {
+        this(searchField, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param memoryBudget is the number of bytes the pair tables can take at most
+     */
+    public Pairwise(SearchField searchField, long memoryBudget) {
+        super(searchField);
+        this.memoryBudget = memoryBudget;
+        grid = searchField.getGrid();
+        robotsNumber = searchField.getRobotData().getRobotsNumber();
+        //The heuristic of each robot alone (see Dijkstra.java)
+        heuristicField = new Dijkstra(searchField).heuristicField;
+
+        walkableIndexes = new int[grid.getLocationsNumber()];
+        int walkableCount = 0;
+        for (int location = 0; location < grid.getLocationsNumber(); location++) {
+            walkableIndexes[location] = grid.isWalkable(location) ? walkableCount++ : -1;
+        }
+        walkableNumber = walkableCount;
+        walkableLocations = new short[walkableNumber];
+        for (int location = 0; location < grid.getLocationsNumber(); location++) {
+            if (walkableIndexes[location] != -1) walkableLocations[walkableIndexes[location]] = (short) location;
+        }
+        pairTables = new AtomicReferenceArray<>(robotsNumber * robotsNumber);
+        allRobots = new short[robotsNumber];
+        for (short robotIndex = 0; robotIndex < robotsNumber; robotIndex++) allRobots[robotIndex] = robotIndex;
+        workArrays = ThreadLocal.withInitial(() -> new WorkArrays(robotsNumber));
+    }
+
+    @Override
+    public float getTotalHeuristic(ArrayList<Short> robotsLocations) {
+        WorkArrays work = workArrays.get();
+        for (short robotIndex = 0; robotIndex < robotsLocations.size(); robotIndex++) work.locations[robotIndex] = robotsLocations.get(robotIndex);
+        return getTotalHeuristic(work, robotsLocations.size(), allRobots);
+    }
+
+    @Override
+    public float getTotalHeuristic(Node node) {
+        return getTotalHeuristic(node, allRobots);
+    }
+
+    @Override
+    public float getTotalHeuristic(Node node, short[] group) {
+        WorkArrays work = workArrays.get();
+        for (short robotIndex = 0; robotIndex < node.getRobotsNumber(); robotIndex++) work.locations[robotIndex] = node.getRobotLocation(robotIndex);
+        return getTotalHeuristic(work, node.getRobotsNumber(), group);
+    }
+
+    //The i-th location of the work arrays is the one of the robot group[i]
+    private float getTotalHeuristic(WorkArrays work, int locationsNumber, short[] group) {
+        short[] locations = work.locations;
+        float totalHeuristic = 0;
+        for (short robotIndex = 0; robotIndex < locationsNumber; robotIndex++) {
+            totalHeuristic += getHeuristicAtPos(locations[robotIndex], group[robotIndex]);
+        }
+        if (locationsNumber < 2) return totalHeuristic;
+        //Only the pairs (first, second) with first < second are written, and read by the matchings
+        int[] excesses = work.excesses;
+        for (int first = 0; first < locationsNumber; first++) {
+            for (int second = first + 1; second < locationsNumber; second++) {
+                excesses[first * locationsNumber + second] = getExcess(group[first], locations[first], group[second], locations[second]);
+            }
+        }
+        if (locationsNumber <= MAX_EXACT_MATCHING) return totalHeuristic + getMaximumMatching(excesses, locationsNumber, 0);
+        Arrays.fill(work.isMatched, 0, locationsNumber, false);
+        return totalHeuristic + getGreedyMatching(excesses, locationsNumber, work.isMatched);
+    }
+
+    //The cost the pair needs beyond the Dijkstra heuristics of its robots (0 if the pair table is not available)
+    private int getExcess(short firstRobot, short firstLocation, short secondRobot, short secondLocation) {
+        char[] pairTable = getPairTable(firstRobot, secondRobot);
+        if (pairTable == OVER_BUDGET) return 0;
+        char pairCost = pairTable[walkableIndexes[firstLocation] * walkableNumber + walkableIndexes[secondLocation]];
+        if (pairCost == UNREACHABLE) return 0;
+        float singleCosts = getHeuristicAtPos(firstLocation, firstRobot) + getHeuristicAtPos(secondLocation, secondRobot);
+        return Math.max(0, pairCost - (int) singleCosts);
+    }
+
+    //The robots of usedRobots (a bitset) are already in a pair: the robots left are matched with the ones after them, or with none
+    private static int getMaximumMatching(int[] excesses, int robotsNumber, int usedRobots) {
+        int first = 0;
+        while (first < robotsNumber && (usedRobots & (1 << first)) != 0) first++;
+        if (first >= robotsNumber - 1) return 0;
+        //The first robot left is in no pair
+        int bestExcess = getMaximumMatching(excesses, robotsNumber, usedRobots | (1 << first));
+        for (int second = first + 1; second < robotsNumber; second++) {
+            int excess = excesses[first * robotsNumber + second];
+            if (excess == 0 || (usedRobots & (1 << second)) != 0) continue;
+            bestExcess = Math.max(bestExcess, excess + getMaximumMatching(excesses, robotsNumber, usedRobots | (1 << first) | (1 << second)));
+        }
+        return bestExcess;
+    }
+
+    //The pairs of highest excess first, as long as their robots are not in a pair yet
+    private static int getGreedyMatching(int[] excesses, int robotsNumber, boolean[] isMatched) {
+        int totalExcess = 0;
+        while (true) {
+            int bestPair = -1;
+            for (int first = 0; first < robotsNumber; first++) {
+                if (isMatched[first]) continue;
+                for (int second = first + 1; second < robotsNumber; second++) {
+                    int pair = first * robotsNumber + second;
+                    if (!isMatched[second] && excesses[pair] > 0 && (bestPair == -1 || excesses[pair] > excesses[bestPair])) bestPair = pair;
+                }
+            }
+            if (bestPair == -1) return totalExcess;
+            totalExcess += excesses[bestPair];
+            isMatched[bestPair / robotsNumber] = true;
+            isMatched[bestPair % robotsNumber] = true;
+        }
+    }
+
+    private char[] getPairTable(short firstRobot, short secondRobot) {
+        char[] pairTable = pairTables.get(firstRobot * robotsNumber + secondRobot);
+        return (pairTable != null) ? pairTable : buildPairTable(firstRobot, secondRobot);
+    }
+
+    //The searches of the parallel A* share the heuristic: a table is only built by one of them
+    private synchronized char[] buildPairTable(short firstRobot, short secondRobot) {
+        int pairIndex = firstRobot * robotsNumber + secondRobot;
+        if (pairTables.get(pairIndex) != null) return pairTables.get(pairIndex);
+        long tableBytes = (long) walkableNumber * walkableNumber * Character.BYTES;
+        if (bytesUsed + tableBytes > memoryBudget || (long) walkableNumber * walkableNumber > Integer.MAX_VALUE) {
+            pairsOverBudget++;
+            pairTables.set(pairIndex, OVER_BUDGET);
+            return OVER_BUDGET;
+        }
+        long startTime = System.nanoTime();
+        char[] pairTable = computePairCosts(theSearchField.getRobotData().getGoalLocationForRobot(firstRobot),
+                theSearchField.getRobotData().getGoalLocationForRobot(secondRobot));
+        buildTime += System.nanoTime() - startTime;
+        bytesUsed += tableBytes;
+        tablesBuilt++;
+        pairTables.set(pairIndex, pairTable);
+        return pairTable;
+    }
+
+    /**
+     * Dijkstra with buckets, backward from the goals of the pair. A pair of locations (a, b) is the index a * walkableNumber + b.
+     * The pair (a, b) is reached from (a', b') if the first robot goes from a' to a (or stays), without entering the location b'
+     * of the second robot, then the second robot goes from b' to b (or stays), without entering a. So going backward from (a, b),
+     * a' is a or a neighbour of a, b' is b or a neighbour of b, with a != b' and a' != b'.
+     */
+    private char[] computePairCosts(short firstGoal, short secondGoal) {
+        int pairsNumber = walkableNumber * walkableNumber;
+        char[] costs = new char[pairsNumber];
+        Arrays.fill(costs, UNREACHABLE);
+        if (firstGoal == secondGoal) return costs;
+        long[] expandedPairs = new long[(pairsNumber + 63) >>> 6];
+        int maxCost = 0;
+        for (short location : walkableLocations) maxCost = Math.max(maxCost, grid.getCost(location));
+        //A move of both robots costs at most 2 * maxCost, so the buckets are used as a ring (see BucketDijkstra.java)
+        int[][] buckets = new int[2 * maxCost + 1][64];
+        int[] bucketSizes = new int[buckets.length];
+
+        int goalPair = walkableIndexes[firstGoal] * walkableNumber + walkableIndexes[secondGoal];
+        costs[goalPair] = 0;
+        buckets[0][bucketSizes[0]++] = goalPair;
+        int pairsQueued = 1;
+        for (int cost = 0; pairsQueued > 0; cost++) {
+            int bucketIndex = cost % buckets.length;
+            while (bucketSizes[bucketIndex] > 0) {
+                int pair = buckets[bucketIndex][--bucketSizes[bucketIndex]];
+                pairsQueued--;
+                if ((expandedPairs[pair >>> 6] & (1L << pair)) != 0) continue;
+                expandedPairs[pair >>> 6] |= 1L << pair;
+                short firstLocation = walkableLocations[pair / walkableNumber];
+                short secondLocation = walkableLocations[pair % walkableNumber];
+                //Every move of each robot, the last one being NONE
+                for (int firstMove = 0; firstMove <= CompiledGrid.DIRECTIONS_NUMBER; firstMove++) {
+                    int firstPrevious = (firstMove == CompiledGrid.DIRECTIONS_NUMBER) ? firstLocation : grid.getNeighbour(firstLocation, firstMove);
+                    if (firstPrevious == -1) continue;
+                    int firstCost = (firstPrevious == firstLocation) ? 0 : grid.getCost(firstLocation);
+                    for (int secondMove = 0; secondMove <= CompiledGrid.DIRECTIONS_NUMBER; secondMove++) {
+                        int secondPrevious = (secondMove == CompiledGrid.DIRECTIONS_NUMBER) ? secondLocation : grid.getNeighbour(secondLocation, secondMove);
+                        if (secondPrevious == -1 || secondPrevious == firstLocation || secondPrevious == firstPrevious) continue;
+                        int moveCost = firstCost + ((secondPrevious == secondLocation) ? 0 : grid.getCost(secondLocation));
+                        if (moveCost == 0) continue;
+                        int previousPair = walkableIndexes[firstPrevious] * walkableNumber + walkableIndexes[secondPrevious];
+                        //Costs too high for 2 bytes are lowered, which keeps the heuristic admissible
+                        int previousCost = Math.min(cost + moveCost, MAX_COST);
+                        if (previousCost >= costs[previousPair]) continue;
+                        costs[previousPair] = (char) previousCost;
+                        int previousBucket = previousCost % buckets.length;
+                        if (bucketSizes[previousBucket] == buckets[previousBucket].length) {
+                            buckets[previousBucket] = Arrays.copyOf(buckets[previousBucket], buckets[previousBucket].length * 2);
+                        }
+                        buckets[previousBucket][bucketSizes[previousBucket]++] = previousPair;
+                        pairsQueued++;
+                    }
+                }
+            }
+        }
+        return costs;
+    }
+
+    //The arrays of one thread, big enough for a node of all the robots
+    private static final class WorkArrays {
+
+        private final short[] locations;
+        private final int[] excesses;
+        private final boolean[] isMatched;
+
+        private WorkArrays(int robotsNumber) {
+            locations = new short[robotsNumber];
+            excesses = new int[robotsNumber * robotsNumber];
+            isMatched = new boolean[robotsNumber];
+        }
+    }
+
+    //The partial expansion predicts the heuristic of the children from the ones of the robots, which doesn't work with the pairs
+    @Override
+    public boolean isAdditive() {
+        return false;
+    }
+
+    @Override
+    public synchronized String getDiagnosis() {
+        return "Pairwise heuristic: " + tablesBuilt + " pair tables built in " + buildTime / 1000000 + "ms, " + bytesUsed + " bytes ("
+                + walkableNumber + " walkable locations), " + pairsOverBudget + " pairs over the memory budget of " + memoryBudget + " bytes";
+    }
+
+    @Override
+    public String type() {
+        return "Pairwise Heuristic";
+    }
+}
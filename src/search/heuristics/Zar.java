@@ -44,7 +44,7 @@ public class Zar {
         //Creation of a queue
         Queue<Short> myQueue = new LinkedList<>();
         //Start location (= robot current location)
-        short processedPos = myNode.getRobotsList().get(robotIndex).getCurrentLocation();
+        short processedPos = myNode.getRobotLocation(robotIndex);
 
         short newPos;
         boolean isNewPosProcessedIsRobot;
@@ -66,7 +66,7 @@ public class Zar {
                 newPos = (short) (processedPos + dir.getDirectionValue());
 
                 //Check if there si a robot on the neighbour location
-                isNewPosProcessedIsRobot = myNode.getListOfRobotsLocations().contains(newPos);
+                isNewPosProcessedIsRobot = myNode.isAnyRobotOnLocation(newPos);
 
                 //If there is no robot on the neighbour location and it is walkable
                 if (!isNewPosProcessedIsRobot && theSearchField.getBlocktypeFromPos(newPos).isWalkable() && zar.contains(newPos)) {